@@ -30,6 +30,8 @@ object Libs {
 
     const val junit = "junit:junit:4.12"
 
+    const val robolectric = "org.robolectric:robolectric:4.5.1"
+
     object Kotlin {
         private const val version = "1.4.32"
         const val stdlib = "org.jetbrains.kotlin:kotlin-stdlib:$version"
@@ -57,6 +59,8 @@ object Libs {
 
         const val core = "androidx.core:core:1.5.0"
         const val coreKtx = "androidx.core:core-ktx:1.5.0"
+
+        const val recyclerview = "androidx.recyclerview:recyclerview:1.2.1"
     }
 
     const val constraintLayout = "androidx.constraintlayout:constraintlayout:2.0.4"
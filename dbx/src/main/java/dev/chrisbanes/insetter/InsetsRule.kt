@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import androidx.core.view.WindowInsetsCompat
+
+/**
+ * Functions for creating the values used by the `app:insetterPadding` and `app:insetterMargin`
+ * data binding attributes.
+ *
+ * Each value is a [Long] which contains a bit mask of [WindowInsetsCompat.Type]s for each
+ * side, using 16 bits per side. Values can be combined with the `|` operator:
+ *
+ * ``` xml
+ * <import type="dev.chrisbanes.insetter.InsetsRule" />
+ * <import type="dev.chrisbanes.insetter.Side" />
+ * <import type="androidx.core.view.WindowInsetsCompat.Type" />
+ *
+ * <View
+ *     app:insetterPadding="@{InsetsRule.of(Type.statusBars() | Type.navigationBars())}"
+ *     app:insetterMargin="@{InsetsRule.of(Type.displayCutout(), Side.LEFT | Side.RIGHT)}" />
+ * ```
+ */
+object InsetsRule {
+    /**
+     * Returns a value which applies the given [insetTypes] to the given [sides].
+     *
+     * @param insetTypes Bit mask of [WindowInsetsCompat.Type]s to apply.
+     * The [windowInsetTypesOf] function is useful for creating the bit mask.
+     * @param sides Bit mask of [Side]s containing which sides to apply.
+     * Defaults to [Side.ALL] to apply all sides. The mask can be created via [sidesOf].
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun of(insetTypes: Int, @Sides sides: Int = Side.ALL): Long {
+        // The value is a packed SideApply from the library, so that it can be used directly
+        return SideApplyRules.of(insetTypes, sides)
+    }
+}
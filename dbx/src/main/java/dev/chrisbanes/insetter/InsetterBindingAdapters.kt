@@ -16,8 +16,10 @@
 
 package dev.chrisbanes.insetter
 
+import android.util.SparseArray
 import android.view.View
 import androidx.databinding.BindingAdapter
+import dev.chrisbanes.insetter.dbx.R
 
 @BindingAdapter(
     value = [
@@ -61,7 +63,35 @@ fun applyInsetsFromBooleans(
     marginSystemGestureRight: Boolean,
     marginSystemGestureBottom: Boolean
 ) {
-    Insetter.builder()
+    // Pack the attributes into a single key, with one bit for each attribute
+    val key = consumeWindowInsets.toBit(0) or
+        padSystemWindowLeft.toBit(1) or
+        padSystemWindowTop.toBit(2) or
+        padSystemWindowRight.toBit(3) or
+        padSystemWindowBottom.toBit(4) or
+        padSystemGestureLeft.toBit(5) or
+        padSystemGestureTop.toBit(6) or
+        padSystemGestureRight.toBit(7) or
+        padSystemGestureBottom.toBit(8) or
+        marginSystemWindowLeft.toBit(9) or
+        marginSystemWindowTop.toBit(10) or
+        marginSystemWindowRight.toBit(11) or
+        marginSystemWindowBottom.toBit(12) or
+        marginSystemGestureLeft.toBit(13) or
+        marginSystemGestureTop.toBit(14) or
+        marginSystemGestureRight.toBit(15) or
+        marginSystemGestureBottom.toBit(16)
+
+    // If the view already has the spec for the same config, there's nothing to do. This
+    // is common when views are re-bound, such as items in a RecyclerView. We also check that
+    // the spec is still applied, since the Insetter may have been removed or replaced outside
+    // of data binding.
+    if ((v.getTag(R.id.insetter_dbx_config_key) as? Int) == key &&
+        specCache[key]?.isAppliedTo(v) == true
+    ) return
+
+    // Otherwise we use the shared spec for the config, building it if necessary
+    val spec = specCache[key] ?: Insetter.builder()
         .padding(
             windowInsetTypesOf(ime = true, statusBars = true, navigationBars = true),
             sidesOf(
@@ -99,5 +129,79 @@ fun applyInsetsFromBooleans(
             )
         )
         .consume(if (consumeWindowInsets) Insetter.CONSUME_ALL else Insetter.CONSUME_NONE)
-        .applyToView(v)
+        .buildSpec()
+        .also { specCache.put(key, it) }
+
+    // Applying the spec replaces any Insetter previously applied to the view
+    spec.applyToView(v)
+    v.setTag(R.id.insetter_dbx_config_key, key)
+    v.setTag(R.id.insetter_dbx_rules, null)
 }
+
+/**
+ * Applies window insets using the `app:insetterPadding` and `app:insetterMargin` attributes,
+ * which take values created via [InsetsRule.of]. These support all of the types in
+ * [windowInsetTypesOf].
+ *
+ * The [InsetterSpec] for each combination of values is cached and shared between views, and
+ * re-binding the same values to a view does nothing.
+ */
+@BindingAdapter(
+    value = [
+        "insetterPadding",
+        "insetterMargin",
+        "insetterConsume"
+    ],
+    requireAll = false
+)
+fun applyInsetterRules(
+    v: View,
+    padding: Long,
+    margin: Long,
+    @Insetter.ConsumeOptions consume: Int
+) {
+    // If the view already has the spec for the same rules, and it has not been removed or
+    // replaced outside of data binding, there's nothing to do
+    val current = v.getTag(R.id.insetter_dbx_rules) as? BoundRules
+    if (current != null &&
+        current.padding == padding &&
+        current.margin == margin &&
+        current.consume == consume &&
+        rulesSpecCache[current]?.isAppliedTo(v) == true
+    ) return
+
+    val rules = BoundRules(padding, margin, consume)
+    val spec = rulesSpecCache[rules] ?: buildRulesSpec(rules).also { rulesSpecCache[rules] = it }
+
+    // Applying the spec replaces any Insetter previously applied to the view
+    spec.applyToView(v)
+    v.setTag(R.id.insetter_dbx_rules, rules)
+    v.setTag(R.id.insetter_dbx_config_key, null)
+}
+
+private fun buildRulesSpec(rules: BoundRules): InsetterSpec {
+    // The rules are packed SideApply values, so they are passed to the builder as-is
+    val builder = Insetter.builder().consume(rules.consume)
+    SideApplyRules.padding(builder, rules.padding)
+    SideApplyRules.margin(builder, rules.margin)
+    return builder.buildSpec()
+}
+
+private data class BoundRules(
+    val padding: Long,
+    val margin: Long,
+    val consume: Int,
+)
+
+/**
+ * The shared [InsetterSpec] for each set of rules used with [applyInsetterRules].
+ */
+private val rulesSpecCache = HashMap<BoundRules, InsetterSpec>()
+
+/**
+ * The shared [InsetterSpec] for each config key. There are at most 2^17 keys, but in practice
+ * an app only uses a handful of configs.
+ */
+private val specCache = SparseArray<InsetterSpec>()
+
+private fun Boolean.toBit(index: Int): Int = if (this) 1 shl index else 0
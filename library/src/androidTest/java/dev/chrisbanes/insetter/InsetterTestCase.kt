@@ -17,15 +17,23 @@
 package dev.chrisbanes.insetter
 
 import android.app.Activity
+import android.os.SystemClock
+import android.view.View
 import android.view.ViewGroup
 import android.view.ViewGroup.LayoutParams.MATCH_PARENT
 import android.widget.FrameLayout
 import android.widget.ImageView
+import androidx.core.graphics.Insets
+import androidx.core.view.ViewCompat
 import androidx.core.view.WindowCompat
 import androidx.core.view.WindowInsetsCompat
 import androidx.test.ext.junit.rules.ActivityScenarioRule
 import androidx.test.filters.SdkSuppress
+import dev.chrisbanes.insetter.testutils.assertPadding
+import dev.chrisbanes.insetter.testutils.dispatchInsets
+import org.junit.After
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
 import org.junit.Assert.assertNotNull
 import org.junit.Assert.assertNull
 import org.junit.Assert.assertTrue
@@ -58,6 +66,11 @@ class InsetterTestCase {
         }
     }
 
+    @After
+    fun teardown() {
+        InsetterMetrics.sink = null
+    }
+
     @Test
     fun test_setOnApplyInsetsListener_paddingValues() {
         view.setPadding(11, 12, 13, 14)
@@ -138,6 +151,272 @@ class InsetterTestCase {
         assertNotNull(resultInsets)
     }
 
+    @Test
+    fun test_host_installedAfterAttach_dispatchesToAttachedViews() {
+        addViewToContainer()
+
+        rule.scenario.onActivity {
+            Insetter.builder()
+                .padding(WindowInsetsCompat.Type.statusBars())
+                .applyToView(view)
+
+            // The view is already attached, so it needs to be registered by install()
+            InsetterHost.install(container)
+
+            container.dispatchSystemBars(top = 10, bottom = 20)
+            view.assertPadding(top = 10)
+        }
+    }
+
+    @Test
+    fun test_host_detachedView_isUnregistered() {
+        addViewToContainer()
+
+        rule.scenario.onActivity {
+            InsetterHost.install(container)
+            Insetter.builder()
+                .padding(WindowInsetsCompat.Type.statusBars())
+                .applyToView(view)
+
+            container.dispatchSystemBars(top = 10, bottom = 20)
+            view.assertPadding(top = 10)
+
+            // Once detached, the view should no longer receive the host's dispatches
+            container.removeView(view)
+            container.dispatchSystemBars(top = 30, bottom = 40)
+            view.assertPadding(top = 10)
+        }
+    }
+
+    @Test
+    fun test_host_onlyDispatchesChangedTypes() {
+        addViewToContainer()
+
+        var dispatchCount = 0
+        InsetterMetrics.sink = object : InsetterMetrics() {
+            override fun onDispatch(insetter: Insetter, view: View) {
+                dispatchCount++
+            }
+        }
+
+        rule.scenario.onActivity {
+            InsetterHost.install(container)
+            container.dispatchSystemBars(top = 10, bottom = 20)
+
+            // Registering dispatches the host's last insets
+            Insetter.builder()
+                .padding(WindowInsetsCompat.Type.statusBars(), Side.TOP)
+                .applyToView(view)
+            assertEquals(1, dispatchCount)
+
+            // Only the navigation bars have changed, so the Insetter should not receive them
+            container.dispatchSystemBars(top = 10, bottom = 40)
+            assertEquals(1, dispatchCount)
+
+            // The status bars have changed
+            container.dispatchSystemBars(top = 30, bottom = 40)
+            assertEquals(2, dispatchCount)
+            view.assertPadding(0, 30, 0, 0)
+        }
+    }
+
+    @Test
+    fun test_host_rootInsetterAppliedAfterInstall() {
+        addViewToContainer()
+
+        rule.scenario.onActivity {
+            InsetterHost.install(container)
+            Insetter.builder()
+                .padding(WindowInsetsCompat.Type.statusBars())
+                .applyToView(view)
+            // The root's Insetter must not replace the host's listener
+            val rootInsetter = Insetter.builder()
+                .padding(WindowInsetsCompat.Type.statusBars())
+                .applyToView(container)
+
+            container.dispatchSystemBars(top = 10)
+            container.assertPadding(top = 10)
+            view.assertPadding(top = 10)
+
+            // Removing the root's Insetter must not remove the host's listener either
+            rootInsetter.removeFromView(container)
+            container.dispatchSystemBars(top = 20)
+            container.assertPadding(top = 10)
+            view.assertPadding(top = 20)
+        }
+    }
+
+    @Test
+    fun test_host_rootInsetterAppliedBeforeInstall() {
+        addViewToContainer()
+
+        rule.scenario.onActivity {
+            Insetter.builder()
+                .padding(WindowInsetsCompat.Type.statusBars())
+                .applyToView(container)
+            Insetter.builder()
+                .padding(WindowInsetsCompat.Type.statusBars())
+                .applyToView(view)
+            // The host replaces the root's listener, so the root's Insetter is registered
+            InsetterHost.install(container)
+
+            container.dispatchSystemBars(top = 10)
+            container.assertPadding(top = 10)
+            view.assertPadding(top = 10)
+        }
+    }
+
+    @Test
+    fun test_host_nestedHostInstalledAfterAttach_receivesInsets() {
+        rule.scenario.onActivity { activity ->
+            val inner = FrameLayout(activity)
+            inner.addView(view)
+            container.addView(inner)
+
+            InsetterHost.install(container)
+            InsetterHost.install(inner)
+            Insetter.builder()
+                .padding(WindowInsetsCompat.Type.statusBars())
+                .applyToView(view)
+
+            container.dispatchSystemBars(top = 10)
+            view.assertPadding(top = 10)
+        }
+    }
+
+    @Test
+    fun test_host_nestedHostAttachedLater_receivesInsets() {
+        rule.scenario.onActivity { activity ->
+            InsetterHost.install(container)
+
+            val inner = FrameLayout(activity)
+            inner.addView(view)
+            InsetterHost.install(inner)
+            Insetter.builder()
+                .padding(WindowInsetsCompat.Type.statusBars())
+                .applyToView(view)
+
+            // The nested host registers with the outer host when it is attached
+            container.addView(inner)
+            container.dispatchSystemBars(top = 10)
+            view.assertPadding(top = 10)
+
+            // ...and unregisters when detached
+            container.removeView(inner)
+            container.dispatchSystemBars(top = 20)
+            view.assertPadding(top = 10)
+        }
+    }
+
+    @Test
+    @SdkSuppress(minSdkVersion = 23)
+    fun test_applyToView_twice_dispatchesOnceOnAttach() {
+        addViewToContainer()
+        awaitRootWindowInsets()
+
+        rule.scenario.onActivity {
+            var dispatchCount = 0
+            val insetter = Insetter.builder()
+                .setOnApplyInsetsListener { _, _, _ -> dispatchCount++ }
+                // Each attach listener applies the root insets directly, so any stacked
+                // listeners would result in multiple dispatches
+                .applyCachedInsetsOnAttach(true)
+                .build()
+            insetter.applyToView(view)
+            insetter.applyToView(view)
+
+            dispatchCount = 0
+            container.removeView(view)
+            container.addView(view)
+            assertEquals(1, dispatchCount)
+        }
+    }
+
+    @Test
+    @SdkSuppress(minSdkVersion = 23)
+    fun test_applyCachedInsetsOnAttach_dispatchesToSubtree() {
+        awaitRootWindowInsets()
+
+        rule.scenario.onActivity { activity ->
+            val group = FrameLayout(activity)
+            group.addView(view)
+            Insetter.builder()
+                .padding(WindowInsetsCompat.Type.statusBars())
+                .applyCachedInsetsOnAttach(true)
+                .applyToView(group)
+
+            var childInsets: WindowInsetsCompat? = null
+            ViewCompat.setOnApplyWindowInsetsListener(view) { _, insets ->
+                childInsets = insets
+                insets
+            }
+
+            // The cached insets are applied synchronously when attached, so the child should
+            // receive them straight away
+            container.addView(group)
+            assertNotNull(childInsets)
+        }
+    }
+
+    @Test
+    fun test_removeFromView_removesListeners() {
+        addViewToContainer()
+
+        rule.scenario.onActivity {
+            val insetter = Insetter.builder()
+                .padding(WindowInsetsCompat.Type.statusBars())
+                .padding(WindowInsetsCompat.Type.ime(), Side.BOTTOM, animated = true)
+                .applyToView(view)
+
+            view.dispatchSystemBars(top = 10)
+            view.assertPadding(top = 10)
+
+            insetter.removeFromView(view)
+
+            val node = InsetterNode.peek(view)!!
+            assertNull(node.insetter)
+            assertNull(node.listener)
+            assertNull(node.animator)
+            assertFalse(node.animatorSetOnView)
+            assertNull(node.attachListener)
+
+            // Neither dispatches nor re-attaching should update the view
+            view.dispatchSystemBars(top = 30)
+            container.removeView(view)
+            container.addView(view)
+            view.dispatchSystemBars(top = 40)
+            view.assertPadding(top = 10)
+        }
+    }
+
+    /**
+     * Waits until the window has dispatched its insets, so that
+     * [ViewCompat.getRootWindowInsets] returns them.
+     */
+    private fun awaitRootWindowInsets() {
+        val deadline = SystemClock.uptimeMillis() + 5_000
+        var available = false
+        while (!available && SystemClock.uptimeMillis() < deadline) {
+            rule.scenario.onActivity {
+                available = ViewCompat.getRootWindowInsets(container) != null
+            }
+            if (!available) Thread.sleep(10)
+        }
+        assertTrue(available)
+    }
+
+    /**
+     * Dispatches insets with the given status bar and navigation bar sizes to this view.
+     */
+    private fun View.dispatchSystemBars(top: Int, bottom: Int = 0) {
+        dispatchInsets {
+            WindowInsetsCompat.Builder()
+                .setInsets(WindowInsetsCompat.Type.statusBars(), Insets.of(0, top, 0, 0))
+                .setInsets(WindowInsetsCompat.Type.navigationBars(), Insets.of(0, 0, 0, bottom))
+                .build()
+        }
+    }
+
     private fun addViewToContainer(
         lp: ViewGroup.LayoutParams? = null,
         fitSystemWindows: Boolean = true
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import androidx.core.view.WindowInsetsCompat
+
+/**
+ * A precomputed plan of which sides of each [WindowInsetsCompat.Type] should be consumed,
+ * used for [Insetter.CONSUME_AUTO].
+ *
+ * The plan is computed once from the [applied] types, so that each dispatch only needs to look
+ * at the types which are actually consumed.
+ */
+internal class ConsumePlan(applied: SideApply) {
+    /** Each single type bit which is consumed on at least one side */
+    private val types: IntArray
+
+    /**
+     * A mask for the type at the same index in [types], which keeps only the sides which
+     * are not consumed when applied to the type's [PackedInsets.packed] value.
+     */
+    private val keepMasks: LongArray
+
+    init {
+        val appliedTypes = applied.all and ALL_INSET_TYPES
+        val count = Integer.bitCount(appliedTypes)
+        types = IntArray(count)
+        keepMasks = LongArray(count)
+
+        var remaining = appliedTypes
+        var index = 0
+        while (remaining != 0) {
+            val type = Integer.lowestOneBit(remaining)
+            types[index] = type
+            keepMasks[index] = PackedInsets.of(
+                left = if (applied.left and type != 0) 0 else -1,
+                top = if (applied.top and type != 0) 0 else -1,
+                right = if (applied.right and type != 0) 0 else -1,
+                bottom = if (applied.bottom and type != 0) 0 else -1,
+            ).packed
+            remaining = remaining and type.inv()
+            index++
+        }
+    }
+
+    val isEmpty: Boolean
+        get() = types.isEmpty()
+
+    /**
+     * Returns a copy of [insets] with the sides in this plan consumed (set to zero). If nothing
+     * needs to be consumed, the original [insets] instance is returned.
+     */
+    fun consume(insets: WindowInsetsCompat): WindowInsetsCompat {
+        // Fast path. If nothing is applied, no need to do anything
+        if (isEmpty) return insets
+
+        // We lazily create the builder, only once we know that something is consumed
+        var builder: WindowInsetsCompat.Builder? = null
+
+        for (i in types.indices) {
+            val type = types[i]
+            val typeInsets = insets.getPackedInsets(type)
+
+            // If the insets are empty, nothing to do
+            if (typeInsets.isEmpty) continue
+
+            if (builder == null) {
+                builder = WindowInsetsCompat.Builder(insets)
+            }
+            // Now set the insets, selectively 'consuming' (zero-ing out) any consumed sides.
+            val remaining = PackedInsets(typeInsets.packed and keepMasks[i])
+            builder.setInsets(type, remaining.toInsets())
+        }
+
+        return builder?.build() ?: insets
+    }
+
+    companion object {
+        val EMPTY = ConsumePlan(SideApply.NONE)
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.app.Activity
+import android.content.Context
+import android.content.ContextWrapper
+import android.os.Build
+import android.view.View
+import androidx.annotation.RequiresApi
+import androidx.core.view.ViewCompat
+import androidx.core.view.WindowInsetsCompat
+
+/**
+ * Returns an estimate of the window insets which the given [view] will receive in its first
+ * dispatch, or null if no estimate is needed or available.
+ *
+ * An estimate is only returned before the view's window has received its first dispatch,
+ * since afterwards the view receives the window's real insets when it is attached. The
+ * estimate is the same for every view in a window, so it is computed once and then stored
+ * on the window's decor view.
+ *
+ * On API 30+ this uses the insets from the current [android.view.WindowMetrics] of the
+ * view's activity. On older API levels, the insets from the persisted [InsetsSnapshot] are
+ * used, which are recorded via [recordInitialInsets].
+ */
+internal fun initialInsetsOf(view: View): WindowInsetsCompat? {
+    if (ViewCompat.getRootWindowInsets(view) != null) return null
+
+    val activity = view.context.findActivity()
+    val decorView = activity?.window?.peekDecorView() ?: return estimateInitialInsets(view)
+    if (ViewCompat.getRootWindowInsets(decorView) != null) return null
+
+    (decorView.getTag(R.id.insetter_initial_insets) as? WindowInsetsCompat)?.let { return it }
+    return estimateInitialInsets(view)?.also {
+        decorView.setTag(R.id.insetter_initial_insets, it)
+    }
+}
+
+private fun estimateInitialInsets(view: View): WindowInsetsCompat? {
+    if (Build.VERSION.SDK_INT >= 30) {
+        return windowMetricsInsetsOf(view)
+    }
+    return InsetsSnapshotStore.get(view.context)
+}
+
+/**
+ * Records the root window insets of the given [view]'s window, so that they can be returned
+ * from [initialInsetsOf] in the future. The root insets are used rather than the insets
+ * dispatched to the view, since an ancestor may have consumed or modified those.
+ *
+ * This is called for each view which receives a dispatch, so the root insets are only
+ * recorded once per window dispatch: the last recorded instance is stored on the root view.
+ * This is a no-op on API 30+, where [android.view.WindowMetrics] are used, and below API 23,
+ * where the root insets are not available.
+ */
+internal fun recordInitialInsets(view: View) {
+    if (Build.VERSION.SDK_INT >= 30) return
+
+    val rootInsets = ViewCompat.getRootWindowInsets(view) ?: return
+    // The platform instance is only replaced when the window's insets change
+    val platformInsets = rootInsets.toWindowInsets() ?: return
+    val rootView = view.rootView
+    if (rootView.getTag(R.id.insetter_recorded_insets) === platformInsets) return
+    rootView.setTag(R.id.insetter_recorded_insets, platformInsets)
+
+    InsetsSnapshotStore.record(view.context, rootInsets)
+}
+
+@RequiresApi(30)
+private fun windowMetricsInsetsOf(view: View): WindowInsetsCompat? {
+    // WindowMetrics are only available from a visual context, so we use the activity
+    val activity = view.context.findActivity() ?: return null
+    val insets = activity.windowManager.currentWindowMetrics.windowInsets
+    return WindowInsetsCompat.toWindowInsetsCompat(insets, view)
+}
+
+private tailrec fun Context.findActivity(): Activity? = when (this) {
+    is Activity -> this
+    is ContextWrapper -> baseContext.findActivity()
+    else -> null
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import androidx.core.view.WindowInsetsCompat
+
+/**
+ * Computes which [WindowInsetsCompat.Type]s have changed between two consecutive
+ * [WindowInsetsCompat] instances.
+ *
+ * This is useful in custom listeners to avoid doing any work when only unrelated types have
+ * changed. If you're only interested in some types, use the overload which takes `types`, so
+ * that only those types are compared. For example, a listener which only handles the status
+ * bars does not need to do anything when only the IME insets have changed:
+ *
+ * ```
+ * val changed = changedInsetTypes(previousInsets, insets, WindowInsetsCompat.Type.statusBars())
+ * if (changed != 0) {
+ *     // Update the view
+ * }
+ * ```
+ *
+ * @param previous The previously dispatched insets, or null if there were none.
+ * @param current The newly dispatched insets.
+ * @return Bit mask of the [WindowInsetsCompat.Type]s whose insets differ. If [previous] is
+ * null, all types are returned.
+ */
+fun changedInsetTypes(previous: WindowInsetsCompat?, current: WindowInsetsCompat): Int {
+    return changedInsetTypes(previous, current, ALL_INSET_TYPES)
+}
+
+/**
+ * Computes which of the given [WindowInsetsCompat.Type]s have changed between two consecutive
+ * [WindowInsetsCompat] instances. Only the [types] are compared, so the cost scales with the
+ * number of types which you're interested in.
+ *
+ * @param previous The previously dispatched insets, or null if there were none.
+ * @param current The newly dispatched insets.
+ * @param types Bit mask of the [WindowInsetsCompat.Type]s to compare.
+ * @return Bit mask of the [types] whose insets differ. If [previous] is null, all of the
+ * [types] are returned.
+ */
+fun changedInsetTypes(previous: WindowInsetsCompat?, current: WindowInsetsCompat, types: Int): Int {
+    val typesToCompare = types and ALL_INSET_TYPES
+    // If we have nothing to compare against, treat everything as changed
+    if (previous == null) return typesToCompare
+    // Fast path for the same instance being dispatched again
+    if (previous === current) return 0
+
+    var changed = 0
+    var remaining = typesToCompare
+    while (remaining != 0) {
+        val type = Integer.lowestOneBit(remaining)
+        if (previous.getPackedInsets(type) != current.getPackedInsets(type)) {
+            changed = changed or type
+        }
+        remaining = remaining and type.inv()
+    }
+    return changed
+}
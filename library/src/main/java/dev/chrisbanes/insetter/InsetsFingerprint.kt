@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+/**
+ * Stores the resolved inset values which were last applied to a view, for only the types
+ * which are applied on each side. This allows us to skip any dispatches which would not
+ * result in a change to the view.
+ *
+ * The values are resolved by the caller, so that the same values can then be applied to the
+ * view without querying the insets again.
+ */
+internal class InsetsFingerprint {
+    private var deferredTypes = 0
+    private var padding = PackedInsets.NONE
+    private var margin = PackedInsets.NONE
+    private var valid = false
+
+    /**
+     * Updates the stored values to the given resolved [padding] and [margin] insets,
+     * returning true if any of the values are different to the previous call.
+     */
+    fun update(padding: PackedInsets, margin: PackedInsets, deferredTypes: Int): Boolean {
+        // If the deferred types have changed, the resolved types for each side have too
+        val changed = !valid ||
+            deferredTypes != this.deferredTypes ||
+            padding != this.padding ||
+            margin != this.margin
+
+        this.deferredTypes = deferredTypes
+        this.padding = padding
+        this.margin = margin
+        // The first update is always treated as a change
+        valid = true
+        return changed
+    }
+}
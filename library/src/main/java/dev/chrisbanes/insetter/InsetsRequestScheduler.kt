@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.view.View
+import androidx.core.view.ViewCompat
+
+/**
+ * Coalesces requests for a new window insets pass from views in the same window.
+ *
+ * Each call to [ViewCompat.requestApplyInsets] results in a dispatch through the entire
+ * window, so requesting one for every view which is attached in the same frame (such as
+ * items in a RecyclerView) is wasteful. Instead, this class issues at most one request
+ * on the window's root view per frame.
+ *
+ * Instances are retrieved via [InsetsRequestScheduler.of].
+ */
+class InsetsRequestScheduler private constructor(
+    private val root: View,
+) {
+    private var scheduled = false
+
+    private val requestRunnable = Runnable {
+        scheduled = false
+        ViewCompat.requestApplyInsets(root)
+        InsetterMetrics.sink?.onApplyInsetsRequested(root)
+    }
+
+    /**
+     * The number of requests which have been merged into an already scheduled request.
+     */
+    var mergedRequestCount: Int = 0
+        private set
+
+    /**
+     * Schedule a request for a window insets pass on the next frame. If a request is
+     * already scheduled, this call is merged into it.
+     */
+    fun requestApplyInsets() {
+        if (scheduled) {
+            mergedRequestCount++
+            return
+        }
+        scheduled = true
+        ViewCompat.postOnAnimation(root, requestRunnable)
+    }
+
+    companion object {
+        /**
+         * Returns the [InsetsRequestScheduler] for the window which [view] is currently
+         * attached to.
+         */
+        @JvmStatic
+        fun of(view: View): InsetsRequestScheduler {
+            val root = view.rootView
+            val tagged = root.getTag(R.id.insetter_request_scheduler) as? InsetsRequestScheduler
+            if (tagged != null) return tagged
+
+            return InsetsRequestScheduler(root).also {
+                root.setTag(R.id.insetter_request_scheduler, it)
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.content.Context
+import android.content.res.Configuration
+import android.util.Log
+import androidx.core.content.ContextCompat
+import androidx.core.util.AtomicFile
+import androidx.core.view.WindowInsetsCompat
+import java.io.File
+import java.io.FileNotFoundException
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+/**
+ * A snapshot of the last dispatched insets for the system bars, display cutout and IME.
+ *
+ * A separate set of insets is stored for each combination of orientation and window width
+ * class (see [slotOf]), since the insets usually differ between them. The snapshot is
+ * serialized to a fixed-size binary format of [SIZE_BYTES] bytes, via [toByteArray] and
+ * [readFrom].
+ */
+internal class InsetsSnapshot {
+    /** The packed insets of each type in [SNAPSHOT_TYPES], for each slot */
+    private val values = LongArray(SLOT_COUNT * SNAPSHOT_TYPES.size)
+
+    /** Bit mask of the slots which contain values */
+    private var presentSlots = 0
+
+    /**
+     * Returns the insets stored for the given [slot], or null if there are none. The
+     * [WindowInsetsCompat.Type]s in [excludeTypes] are not included in the result.
+     */
+    fun get(slot: Int, excludeTypes: Int = 0): WindowInsetsCompat? {
+        if (presentSlots and (1 shl slot) == 0) return null
+
+        val builder = WindowInsetsCompat.Builder()
+        for (i in SNAPSHOT_TYPES.indices) {
+            val type = SNAPSHOT_TYPES[i]
+            if (type and excludeTypes != 0) continue
+            builder.setInsets(type, PackedInsets(values[slot * SNAPSHOT_TYPES.size + i]).toInsets())
+        }
+        return builder.build()
+    }
+
+    /**
+     * Stores the given [insets] in the [slot], returning true if any values changed.
+     */
+    fun put(slot: Int, insets: WindowInsetsCompat): Boolean {
+        var changed = presentSlots and (1 shl slot) == 0
+        for (i in SNAPSHOT_TYPES.indices) {
+            val index = slot * SNAPSHOT_TYPES.size + i
+            val packed = insets.getPackedInsets(SNAPSHOT_TYPES[i]).packed
+            if (values[index] != packed) {
+                values[index] = packed
+                changed = true
+            }
+        }
+        presentSlots = presentSlots or (1 shl slot)
+        return changed
+    }
+
+    /**
+     * Serializes this snapshot into a new array of [SIZE_BYTES] bytes.
+     */
+    fun toByteArray(): ByteArray {
+        val buffer = ByteBuffer.allocate(SIZE_BYTES)
+        buffer.putInt(MAGIC)
+        buffer.putInt(VERSION)
+        buffer.putInt(presentSlots)
+        for (value in values) {
+            buffer.putLong(value)
+        }
+        return buffer.array()
+    }
+
+    /**
+     * Reads the values from the given [bytes], which were previously written via
+     * [toByteArray]. Returns false if the [bytes] are not a valid snapshot, in which case
+     * this snapshot is left unchanged.
+     */
+    fun readFrom(bytes: ByteArray): Boolean {
+        if (bytes.size != SIZE_BYTES) return false
+
+        val buffer = ByteBuffer.wrap(bytes)
+        if (buffer.int != MAGIC || buffer.int != VERSION) return false
+
+        presentSlots = buffer.int
+        for (i in values.indices) {
+            values[i] = buffer.long
+        }
+        return true
+    }
+
+    companion object {
+        private const val MAGIC = 0x494E5354 // 'INST'
+        private const val VERSION = 1
+
+        /** The number of width classes for each orientation */
+        private const val WIDTH_CLASS_COUNT = 3
+        private const val SLOT_COUNT = 2 * WIDTH_CLASS_COUNT
+
+        /** The types which are stored in each slot */
+        private val SNAPSHOT_TYPES = intArrayOf(
+            WindowInsetsCompat.Type.statusBars(),
+            WindowInsetsCompat.Type.navigationBars(),
+            WindowInsetsCompat.Type.displayCutout(),
+            WindowInsetsCompat.Type.ime(),
+        )
+
+        /** The size of the serialized snapshot: a header of 3 ints, then the packed values */
+        val SIZE_BYTES = 3 * 4 + SLOT_COUNT * SNAPSHOT_TYPES.size * 8
+
+        /**
+         * Returns the slot for the given [orientation] and [screenWidthDp], from a
+         * [Configuration].
+         */
+        fun slotOf(orientation: Int, screenWidthDp: Int): Int {
+            val widthClass = when {
+                screenWidthDp < 600 -> 0
+                screenWidthDp < 840 -> 1
+                else -> 2
+            }
+            return when (orientation) {
+                Configuration.ORIENTATION_LANDSCAPE -> WIDTH_CLASS_COUNT + widthClass
+                else -> widthClass
+            }
+        }
+    }
+}
+
+/**
+ * Holds the process-wide [InsetsSnapshot], which is persisted to a small file in the app's
+ * no-backup files directory.
+ *
+ * The file is read synchronously on first use, which is a single read of
+ * [InsetsSnapshot.SIZE_BYTES] bytes. Writes happen on a background thread, and only when the
+ * stored values change.
+ */
+internal object InsetsSnapshotStore {
+    private const val TAG = "InsetsSnapshotStore"
+    private const val FILE_NAME = "insetter_insets_snapshot"
+
+    private var snapshot: InsetsSnapshot? = null
+    private var file: AtomicFile? = null
+
+    private val writeExecutor: Executor by lazy(LazyThreadSafetyMode.NONE) {
+        Executors.newSingleThreadExecutor()
+    }
+
+    /**
+     * Returns the stored insets for the current configuration of the [context], or null if
+     * there are none. The IME insets are not included, since the IME is not usually visible
+     * when a window is first shown.
+     */
+    fun get(context: Context): WindowInsetsCompat? {
+        val config = context.resources.configuration
+        val slot = InsetsSnapshot.slotOf(config.orientation, config.screenWidthDp)
+        return snapshotOf(context).get(slot, excludeTypes = WindowInsetsCompat.Type.ime())
+    }
+
+    /**
+     * Stores the given [insets] for the current configuration of the [context]. The
+     * snapshot is written to disk in the background if any of the values have changed.
+     */
+    fun record(context: Context, insets: WindowInsetsCompat) {
+        val config = context.resources.configuration
+        val slot = InsetsSnapshot.slotOf(config.orientation, config.screenWidthDp)
+        val snapshot = snapshotOf(context)
+        if (snapshot.put(slot, insets)) {
+            // We serialize on this thread, so that the background thread has its own copy
+            val bytes = snapshot.toByteArray()
+            val file = fileOf(context)
+            writeExecutor.execute { write(file, bytes) }
+        }
+    }
+
+    private fun snapshotOf(context: Context): InsetsSnapshot {
+        snapshot?.let { return it }
+
+        val snapshot = InsetsSnapshot()
+        val bytes = try {
+            fileOf(context).readFully()
+        } catch (e: FileNotFoundException) {
+            // We haven't written a snapshot yet
+            null
+        } catch (e: IOException) {
+            Log.w(TAG, "Failed to read insets snapshot", e)
+            null
+        }
+        if (bytes != null) snapshot.readFrom(bytes)
+        this.snapshot = snapshot
+        return snapshot
+    }
+
+    private fun fileOf(context: Context): AtomicFile = file ?: AtomicFile(
+        File(ContextCompat.getNoBackupFilesDir(context), FILE_NAME)
+    ).also { file = it }
+
+    private fun write(file: AtomicFile, bytes: ByteArray) {
+        val stream = try {
+            file.startWrite()
+        } catch (e: IOException) {
+            Log.w(TAG, "Failed to write insets snapshot", e)
+            return
+        }
+        try {
+            stream.write(bytes)
+            file.finishWrite(stream)
+        } catch (e: IOException) {
+            file.failWrite(stream)
+            Log.w(TAG, "Failed to write insets snapshot", e)
+        }
+    }
+}
@@ -23,12 +23,10 @@ import android.util.Log
 import android.view.View
 import android.view.ViewGroup.MarginLayoutParams
 import androidx.annotation.IntDef
-import androidx.core.graphics.Insets
 import androidx.core.view.OnApplyWindowInsetsListener
 import androidx.core.view.ViewCompat
 import androidx.core.view.WindowInsetsAnimationCompat
 import androidx.core.view.WindowInsetsCompat
-import androidx.core.view.WindowInsetsCompat.Type
 import androidx.core.view.doOnAttach
 import dev.chrisbanes.insetter.Insetter.Builder
 
@@ -62,9 +60,13 @@ class Insetter private constructor(
     private val paddingTypes: SideApply,
     private val marginTypes: SideApply,
     private val onApplyInsetsListener: OnApplyInsetsListener?,
+    private val listenerTypes: Int,
     @ConsumeOptions private val consume: Int,
     private val animatingTypes: Int,
     private val animateSyncViews: List<View>,
+    private val skipUnchangedInsets: Boolean,
+    private val applyCachedInsetsOnAttach: Boolean,
+    private val seedInitialInsets: Boolean,
 ) {
     @IntDef(value = [CONSUME_NONE, CONSUME_ALL, CONSUME_AUTO])
     @Retention(AnnotationRetention.SOURCE)
@@ -77,20 +79,36 @@ class Insetter private constructor(
     )
     annotation class ConsumeOptions
 
-    private val persistentTypes: SideApply
-        get() = paddingTypes + marginTypes
+    private val persistentTypes: SideApply = paddingTypes + marginTypes
 
-    private var currentlyDeferredTypes: Int = 0
-    private var lastWindowInsets: WindowInsetsCompat? = null
+    private val consumePlan: ConsumePlan = when (consume) {
+        CONSUME_AUTO -> ConsumePlan(persistentTypes)
+        else -> ConsumePlan.EMPTY
+    }
+
+    /**
+     * The number of window insets dispatches which have been skipped, due to the relevant
+     * inset values not changing since the previous dispatch.
+     *
+     * This is only updated when [Builder.skipUnchangedInsets] is enabled. If this instance
+     * has been applied to multiple views (e.g. via an [InsetterSpec]), this is the total for
+     * all of those views.
+     */
+    var skippedDispatchCount: Int = 0
+        private set
 
     /** A builder class for creating instances of [Insetter].  */
     class Builder internal constructor() {
         private var onApplyInsetsListener: OnApplyInsetsListener? = null
+        private var listenerTypes = ALL_INSET_TYPES
 
-        private var padding = SideApply()
-        private var margin = SideApply()
+        private var padding = SideApply.NONE
+        private var margin = SideApply.NONE
 
         private var consume = CONSUME_NONE
+        private var skipUnchangedInsets = false
+        private var applyCachedInsetsOnAttach = false
+        private var seedInitialInsets = false
 
         private var animatingTypes = 0
         private var animateSyncViews = ArrayList<View>()
@@ -103,6 +121,26 @@ class Insetter private constructor(
          */
         fun setOnApplyInsetsListener(onApplyInsetsListener: OnApplyInsetsListener?): Builder {
             this.onApplyInsetsListener = onApplyInsetsListener
+            this.listenerTypes = ALL_INSET_TYPES
+            return this
+        }
+
+        /**
+         * @param onApplyInsetsListener Callback for supplying custom logic to apply insets. If set,
+         * Insetter will ignore any specified side flags, and the caller is responsible for applying
+         * insets.
+         * @param observedTypes Bit mask of [WindowInsetsCompat.Type]s which the listener is
+         * interested in. The listener will only be invoked when the insets for any of these
+         * types have changed since the previous dispatch.
+         * @see Insetter.applyToView
+         * @see changedInsetTypes
+         */
+        fun setOnApplyInsetsListener(
+            onApplyInsetsListener: OnApplyInsetsListener?,
+            observedTypes: Int,
+        ): Builder {
+            this.onApplyInsetsListener = onApplyInsetsListener
+            this.listenerTypes = observedTypes
             return this
         }
 
@@ -142,13 +180,21 @@ class Insetter private constructor(
             @Sides sides: Int = Side.ALL,
             animated: Boolean = false,
         ): Builder {
-            padding.plus(insetType, sides)
+            padding = padding.plus(insetType, sides)
             if (animated) {
                 animatingTypes = animatingTypes or insetType
             }
             return this
         }
 
+        /**
+         * Apply the types of each side in the given [types] as padding of the view.
+         */
+        internal fun padding(types: SideApply): Builder {
+            padding += types
+            return this
+        }
+
         /**
          * Apply the left value of the given [WindowInsetsCompat.Type][insetType] as the
          * left padding of the view.
@@ -238,13 +284,21 @@ class Insetter private constructor(
             @Sides sides: Int = Side.ALL,
             animated: Boolean = false,
         ): Builder {
-            margin.plus(insetType, sides)
+            margin = margin.plus(insetType, sides)
             if (animated) {
                 animatingTypes = animatingTypes or insetType
             }
             return this
         }
 
+        /**
+         * Apply the types of each side in the given [types] as margin of the view.
+         */
+        internal fun margin(types: SideApply): Builder {
+            margin += types
+            return this
+        }
+
         /**
          * Apply the left value of the given [WindowInsetsCompat.Type][insetType] as the
          * left margin of the view.
@@ -318,6 +372,71 @@ class Insetter private constructor(
             return this
         }
 
+        /**
+         * Whether to skip applying any window insets dispatches where the values of the
+         * [padding] and [margin] types have not changed since the previous dispatch. This is
+         * useful to avoid redundant work when the view receives many dispatches.
+         *
+         * Note: this assumes that nothing else modifies the view's padding or margins which
+         * are applied by this [Insetter]. It has no effect when a custom listener has been set
+         * via [setOnApplyInsetsListener].
+         *
+         * @param skip true to skip dispatches with unchanged values. Defaults to false.
+         * @see Insetter.skippedDispatchCount
+         */
+        fun skipUnchangedInsets(skip: Boolean): Builder {
+            this.skipUnchangedInsets = skip
+            return this
+        }
+
+        /**
+         * Whether to apply the window's current root insets directly to the view when it is
+         * attached, rather than requesting a new window insets pass. The insets are read via
+         * [ViewCompat.getRootWindowInsets], which always reflects the window's latest insets.
+         * A new pass is only requested if the root insets are not available.
+         *
+         * This avoids a dispatch through the entire window whenever a view is attached, which
+         * is useful for views which are frequently attached and detached, such as items in a
+         * RecyclerView. The root insets are dispatched to the view's subtree too, as they
+         * would be by a window insets pass, so any views within it also receive them.
+         *
+         * Note: the root insets are the insets of the window's root view, so this should
+         * only be used when no ancestor of the view consumes or modifies the dispatched insets.
+         * [ViewCompat.getRootWindowInsets] is not available on devices running API 22 or
+         * below, so a new window insets pass is always requested on those devices.
+         *
+         * @param applyCached true to apply the window's current insets on attach. Defaults to
+         * false.
+         */
+        fun applyCachedInsetsOnAttach(applyCached: Boolean): Builder {
+            this.applyCachedInsetsOnAttach = applyCached
+            return this
+        }
+
+        /**
+         * Whether to apply an estimate of the window insets when the [Insetter] is applied to
+         * a view, before the first window insets dispatch has been received. This allows the
+         * first layout of the view to already include the insets, rather than the view being
+         * laid out again once the first dispatch arrives.
+         *
+         * On devices running API 30 or above, the estimate comes from the activity's current
+         * [android.view.WindowMetrics]. On older devices, the estimate comes from a small file
+         * containing the insets last dispatched for the same orientation and window width,
+         * which is not available below API 23. If no estimate is available, the view waits for
+         * the first dispatch as usual. Views which the [Insetter] is applied to after their
+         * window's first dispatch are not seeded, since they receive the window's insets when
+         * they are attached.
+         *
+         * Note: the estimated insets are the insets of the whole window, so this should
+         * only be used when no ancestor of the view consumes or modifies the dispatched insets.
+         *
+         * @param seed true to apply estimated insets before the first dispatch. Defaults to false.
+         */
+        fun seedInitialInsets(seed: Boolean): Builder {
+            this.seedInitialInsets = seed
+            return this
+        }
+
         /**
          * Builds the [Insetter] instance and sets it as an
          * [OnApplyWindowInsetsListener][androidx.core.view.OnApplyWindowInsetsListener] on
@@ -338,10 +457,28 @@ class Insetter private constructor(
             paddingTypes = padding,
             marginTypes = margin,
             onApplyInsetsListener = onApplyInsetsListener,
+            listenerTypes = listenerTypes,
             animatingTypes = animatingTypes,
-            animateSyncViews = animateSyncViews,
+            // Copy the list, so that further changes to this builder do not affect the instance
+            animateSyncViews = ArrayList(animateSyncViews),
             consume = consume,
+            skipUnchangedInsets = skipUnchangedInsets,
+            applyCachedInsetsOnAttach = applyCachedInsetsOnAttach,
+            seedInitialInsets = seedInitialInsets,
         )
+
+        /**
+         * Builds an immutable [InsetterSpec], which can be applied to many views.
+         *
+         * @throws IllegalStateException if [syncTranslationTo] has been used, since the
+         * synchronized views are specific to a single view.
+         */
+        fun buildSpec(): InsetterSpec {
+            check(animateSyncViews.isEmpty()) {
+                "syncTranslationTo() can not be used when building an InsetterSpec"
+            }
+            return InsetterSpec(build())
+        }
     }
 
     /**
@@ -351,136 +488,322 @@ class Insetter private constructor(
      *
      * This allows the listener to be able to append inset values to any existing view state
      * properties, rather than overwriting them.
+     *
+     * If an [Insetter] has previously been applied to the view, it is replaced by this instance.
+     * Use [removeFromView] to remove this instance from the view.
      */
     fun applyToView(view: View) {
-        val tagState = view.getTag(R.id.insetter_initial_state) as? ViewState
-        val initialState: ViewState
-        if (tagState != null) {
-            initialState = tagState
-        } else {
-            initialState = ViewState(view)
-            view.setTag(R.id.insetter_initial_state, initialState)
+        // All of the per-view state is stored in the view's node, since this Insetter may be
+        // applied to many views. The observers' Insetter leaves the view as-is, so it does not
+        // capture the view's initial state, which is left for the next Insetter to capture.
+        val node = InsetterNode.of(view, captureInitialState = this !== observerInsetter)
+        // Remove anything which was registered by the previous Insetter (or a previous call),
+        // so that registrations do not accumulate on the view
+        node.release(view)
+        node.reset()
+        node.insetter = this
+        if (skipUnchangedInsets && onApplyInsetsListener == null) {
+            node.fingerprint = InsetsFingerprint()
         }
 
-        ViewCompat.setOnApplyWindowInsetsListener(view) { v, insets ->
-            lastWindowInsets = WindowInsetsCompat(insets)
+        // If the custom listener is only interested in some types, we need to keep track of
+        // the previous insets so that we can tell which types have changed
+        val filterListenerTypes = onApplyInsetsListener != null && listenerTypes != ALL_INSET_TYPES
+
+        val listener = OnApplyWindowInsetsListener { v, insets ->
+            InsetterMetrics.sink?.onDispatch(this, v)
+            // WindowInsetsCompat is immutable, so we can keep a reference without copying
+            node.lastInsets = insets
+            node.notifyObservers(v, insets)
+
+            if (this === observerInsetter) {
+                // The view is only observed, so it handles the insets itself, as it would
+                // without a listener (such as for fitsSystemWindows)
+                return@OnApplyWindowInsetsListener ViewCompat.onApplyWindowInsets(v, insets)
+            }
+
+            if (seedInitialInsets && ViewCompat.isAttachedToWindow(v)) {
+                // Keep the persisted snapshot up to date, for the next time we're started.
+                // We only record real dispatches, not our own estimate applied to a detached view
+                recordInitialInsets(v)
+            }
 
             if (onApplyInsetsListener != null) {
-                // If we have an onApplyInsetsListener, invoke it
-                onApplyInsetsListener.onApplyInsets(v, insets, initialState)
+                // If we have an onApplyInsetsListener, invoke it if any of its types changed
+                if (!filterListenerTypes ||
+                    changedInsetTypes(node.previousListenerInsets, insets, listenerTypes) != 0
+                ) {
+                    onApplyInsetsListener.onApplyInsets(v, insets, node.viewState)
+                }
+                node.previousListenerInsets = insets
                 // We don't know what sides have been applied, so we assume all
-                return@setOnApplyWindowInsetsListener when (consume) {
+                return@OnApplyWindowInsetsListener when (consume) {
                     CONSUME_NONE -> insets
                     else -> WindowInsetsCompat.CONSUMED
                 }
             }
 
-            // Otherwise we applied through applyInsetsToView()
-            applyInsetsToView(v, insets, initialState)
+            // Otherwise we apply the insets to the view, unless the values of the types which
+            // we apply are the same as last time. The values are resolved once, and then used
+            // for both the comparison and applying them.
+            val deferredTypes = node.deferredTypes
+            val typesToPad = paddingTypes - deferredTypes
+            val typesToMargin = marginTypes - deferredTypes
+            val padding = insets.getPackedInsets(typesToPad)
+            val margins = insets.getPackedInsets(typesToMargin)
+            val fingerprint = node.fingerprint
+            if (fingerprint == null || fingerprint.update(padding, margins, deferredTypes)) {
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "applyInsetsToView. View: $v. Insets: $insets")
+                }
+                v.applyPadding(typesToPad, padding, node.initialPadding)
+                v.applyMargins(typesToMargin, margins, node.initialMargins)
+            } else {
+                skippedDispatchCount++
+                InsetterMetrics.sink?.onDispatchSkipped(this, v)
+            }
 
             when (consume) {
                 CONSUME_ALL -> WindowInsetsCompat.CONSUMED
-                CONSUME_AUTO -> {
-                    WindowInsetsCompat.Builder(insets)
-                        .consumeType(Type.statusBars(), insets, persistentTypes)
-                        .consumeType(Type.navigationBars(), insets, persistentTypes)
-                        .consumeType(Type.ime(), insets, persistentTypes)
-                        .consumeType(Type.systemGestures(), insets, persistentTypes)
-                        .consumeType(Type.displayCutout(), insets, persistentTypes)
-                        .build()
-                }
+                CONSUME_AUTO -> consumePlan.consume(insets)
                 else -> insets
             }
         }
+        node.listener = listener
+        if (view.getTag(R.id.insetter_host) == null) {
+            ViewCompat.setOnApplyWindowInsetsListener(view, listener)
+            node.listenerSetOnView = true
+        }
+        // Otherwise the view is the root of a host, which uses the view's listener. The view is
+        // registered with the host when attached, like any other view within it.
+
+        if (seedInitialInsets) {
+            // Apply our estimate of the insets now, so that the first layout includes them.
+            // When the real dispatch arrives it should result in the same values. There is no
+            // estimate once the window has received its first dispatch.
+            initialInsetsOf(view)?.let { listener.onApplyWindowInsets(view, it) }
+        }
 
-        if (animatingTypes != 0) {
-            ViewCompat.setWindowInsetsAnimationCallback(
-                view,
-                object : WindowInsetsAnimationCompat.Callback(DISPATCH_MODE_CONTINUE_ON_SUBTREE) {
-                    override fun onPrepare(animation: WindowInsetsAnimationCompat) {
-                        currentlyDeferredTypes =
-                            currentlyDeferredTypes or (animation.typeMask and animatingTypes)
-                    }
+        val animator = if (animatingTypes != 0) ViewAnimator(view, node) else null
+        node.animator = animator
 
-                    override fun onProgress(
-                        insets: WindowInsetsCompat,
-                        runningAnimations: List<WindowInsetsAnimationCompat>
-                    ): WindowInsetsCompat {
-                        val runningAnimatingTypes = runningAnimations.fold(0) { acc, anim ->
-                            acc or anim.typeMask
-                        } and animatingTypes
-
-                        if (runningAnimatingTypes == 0) {
-                            // If we have no animating types which are running, return now.
-                            return insets
-                        }
-
-                        // onProgress() is called when any of the running animations progress...
-
-                        // First we get the insets which are potentially deferred
-                        val animatedInsets = insets.getInsets(runningAnimatingTypes)
-                        // Then we get the persistent inset types which are applied as
-                        // padding during layout
-                        val persistentInset = insets.getInsets(
-                            persistentTypes.all and runningAnimatingTypes.inv()
-                        )
-
-                        // Now that we subtract the two insets, to calculate the difference.
-                        // We also coerce the insets to be >= 0, to ensure that we don't use
-                        // negative insets.
-                        val diff = Insets.subtract(animatedInsets, persistentInset).let {
-                            Insets.max(it, Insets.NONE)
-                        }
-
-                        // The resulting `diff` insets contain the values for us to apply as a translation
-                        // to the view
-                        val tx = (diff.left - diff.right).toFloat()
-                        val ty = (diff.top - diff.bottom).toFloat()
-
-                        view.translationX = tx
-                        view.translationY = ty
-
-                        for (v in animateSyncViews) {
-                            v.translationX = tx
-                            v.translationY = ty
-                        }
-
-                        return insets
-                    }
+        // The types which this Insetter, and any observers of the view, are interested in
+        node.observedTypes = node.observerTypes or when (onApplyInsetsListener) {
+            null -> persistentTypes.all
+            else -> listenerTypes
+        }
 
-                    override fun onEnd(animation: WindowInsetsAnimationCompat) {
-                        if (currentlyDeferredTypes and animation.typeMask != 0) {
-                            currentlyDeferredTypes =
-                                currentlyDeferredTypes and animation.typeMask.inv()
-
-                            // And finally dispatch the deferred insets to the view now.
-                            // Ideally we would just call view.requestApplyInsets() and let
-                            // the normal dispatch cycle happen, but this happens too late
-                            // resulting in a visual flicker.
-                            // Instead we manually re-dispatch the most recent WindowInsets
-                            // to the view.
-                            if (lastWindowInsets != null) {
-                                ViewCompat.dispatchApplyWindowInsets(view, lastWindowInsets!!)
-                            }
-                        }
-
-                        // Once the animation has ended, reset the translation values
-                        view.translationX = 0f
-                        view.translationY = 0f
-
-                        for (v in animateSyncViews) {
-                            v.translationX = 0f
-                            v.translationY = 0f
-                        }
+        node.attachListener = view.doOnEveryAttach(
+            onAttach = { v ->
+                val host = InsetterHost.of(v)
+                if (host != null) {
+                    // If the view is within a host, the host will dispatch insets and
+                    // animations to us directly
+                    node.registerWith(v, host)
+                } else {
+                    if (animator != null && !node.animatorSetOnView) {
+                        ViewCompat.setWindowInsetsAnimationCallback(v, animator)
+                        node.animatorSetOnView = true
                     }
+                    requestInsetsOnAttach(v)
                 }
+            },
+            onDetach = { v ->
+                node.registeredHost?.unregister(v)
+                node.registeredHost = null
+            }
+        )
+    }
+
+    /**
+     * Removes this [Insetter] from the given [view], which was previously applied via
+     * [applyToView]. This removes the window insets listener, any window insets animation
+     * callback, and the view attach state listener which were added to the view.
+     *
+     * The view's padding and margins are not reset. If a different [Insetter] is currently
+     * applied to the view, this function does nothing. Any window insets observers of the
+     * view, such as an `InsetterItemDecoration`, continue to receive insets.
+     */
+    fun removeFromView(view: View) {
+        val node = InsetterNode.peek(view) ?: return
+        if (node.insetter !== this) return
+
+        node.release(view)
+        node.reset()
+        if (node.observers != null) {
+            observerInsetter.applyToView(view)
+        }
+    }
+
+    /**
+     * Applies the current window insets to the given [view], which has previously had this
+     * [Insetter] applied via [applyToView]. The insets are the root insets of the window which
+     * [attachedView] is currently attached to, from [ViewCompat.getRootWindowInsets].
+     *
+     * This is useful for views which are laid out before they are attached to a window. A
+     * common example is `RecyclerView` items which are prefetched, where you would call this
+     * when binding the item, passing the `RecyclerView` as [attachedView]. The item is then
+     * measured with the correct insets, and the dispatch when it is later attached does not
+     * change its layout.
+     *
+     * @return true if insets were applied, false if no insets are available or this [Insetter]
+     * is not currently applied to the [view].
+     */
+    fun applyCachedInsets(view: View, attachedView: View): Boolean {
+        val node = InsetterNode.peek(view) ?: return false
+        val listener = node.listener
+        if (node.insetter !== this || listener == null) return false
+
+        val insets = ViewCompat.getRootWindowInsets(attachedView) ?: return false
+        listener.onApplyWindowInsets(view, insets)
+        return true
+    }
+
+    private fun requestInsetsOnAttach(view: View) {
+        val rootInsets = when {
+            applyCachedInsetsOnAttach -> ViewCompat.getRootWindowInsets(view)
+            else -> null
+        }
+        if (rootInsets != null) {
+            // If the window's current insets are available, dispatch them directly to this
+            // view and its subtree. This invokes our listener, and then dispatches whatever
+            // it returns to the children, as a window insets pass would.
+            ViewCompat.dispatchApplyWindowInsets(view, rootInsets)
+        } else {
+            // Otherwise request an insets pass. We use the window's scheduler so that
+            // multiple views being attached in the same frame only result in a single pass
+            InsetsRequestScheduler.of(view).requestApplyInsets()
+        }
+    }
+
+    /**
+     * Handles window insets animations for a single view. This is either set as the view's
+     * own [WindowInsetsAnimationCompat.Callback], or driven by the shared callback of an
+     * [InsetterHost].
+     */
+    private inner class ViewAnimator(
+        private val view: View,
+        private val node: InsetterNode,
+    ) : WindowInsetsAnimationCompat.Callback(DISPATCH_MODE_CONTINUE_ON_SUBTREE),
+        InsetsAnimationTarget {
+        private val viewTranslation = AnimatedTranslation()
+
+        override fun onPrepare(animation: WindowInsetsAnimationCompat) {
+            onAnimationPrepare(animation.typeMask)
+        }
+
+        override fun onProgress(
+            insets: WindowInsetsCompat,
+            runningAnimations: List<WindowInsetsAnimationCompat>
+        ): WindowInsetsCompat {
+            onAnimationProgress(insets, runningTypesOf(runningAnimations), viewTranslation)
+            return insets
+        }
+
+        override fun onEnd(animation: WindowInsetsAnimationCompat) {
+            onAnimationEnd(animation.typeMask)
+            viewTranslation.reset()
+        }
+
+        override fun onAnimationPrepare(typeMask: Int) {
+            node.deferredTypes = node.deferredTypes or (typeMask and animatingTypes)
+        }
+
+        override fun onAnimationProgress(
+            insets: WindowInsetsCompat,
+            runningTypes: Int,
+            translation: AnimatedTranslation,
+        ) {
+            val runningAnimatingTypes = runningTypes and animatingTypes
+
+            if (runningAnimatingTypes == 0) {
+                // If we have no animating types which are running, return now.
+                return
+            }
+
+            val metrics = InsetterMetrics.sink
+            val startNanos = if (metrics != null) System.nanoTime() else 0L
+
+            // onProgress() is called when any of the running animations progress...
+
+            // The translation is the difference between the insets which are potentially
+            // deferred, and the persistent inset types which are applied as padding during
+            // layout. The translation may have already been calculated for another view
+            // with the same types during this frame, in which case it is re-used.
+            translation.update(
+                insets = insets,
+                animatedTypes = runningAnimatingTypes,
+                persistentTypes = persistentTypes.all and runningAnimatingTypes.inv(),
             )
+
+            setTranslation(translation.x, translation.y)
+
+            metrics?.onAnimationFrame(this@Insetter, view, System.nanoTime() - startNanos)
         }
 
-        // Now request an insets pass
-        view.doOnEveryAttach { v ->
-            ViewCompat.requestApplyInsets(v)
+        override fun onAnimationEnd(typeMask: Int) {
+            val endedTypes = node.deferredTypes and typeMask
+            if (endedTypes != 0) {
+                node.deferredTypes = node.deferredTypes and typeMask.inv()
+
+                // And finally apply the deferred insets to the view now.
+                // Ideally we would just call view.requestApplyInsets() and let
+                // the normal dispatch cycle happen, but this happens too late
+                // resulting in a visual flicker.
+                // Instead we manually re-apply the most recent WindowInsets to this view.
+                // We don't re-dispatch them, since that would also cause the view's entire
+                // subtree to handle the insets again.
+                val insets = node.lastInsets
+                if (insets != null) {
+                    applyDeferredInsetsToView(view, insets, node, endedTypes)
+                }
+            }
+
+            // Once the animation has ended, reset the translation values
+            setTranslation(0f, 0f)
         }
+
+        private fun setTranslation(tx: Float, ty: Float) {
+            view.translationX = tx
+            view.translationY = ty
+
+            // We use an indexed loop to avoid allocating an iterator on every frame
+            for (i in 0 until animateSyncViews.size) {
+                val v = animateSyncViews[i]
+                v.translationX = tx
+                v.translationY = ty
+            }
+        }
+    }
+
+    /**
+     * Applies the given [insets] to only the sides of the [view] which apply any of the
+     * [deferredTypes], once they are no longer deferred.
+     */
+    private fun applyDeferredInsetsToView(
+        view: View,
+        insets: WindowInsetsCompat,
+        node: InsetterNode,
+        deferredTypes: Int,
+    ) {
+        if (onApplyInsetsListener != null) {
+            // We don't know which sides the listener applies, so we invoke it again
+            onApplyInsetsListener.onApplyInsets(view, insets, node.viewState)
+            return
+        }
+
+        val typesToPad = (paddingTypes - node.deferredTypes).sidesWith(deferredTypes)
+        view.applyPadding(
+            typesToApply = typesToPad,
+            resolvedInsets = insets.getPackedInsets(typesToPad),
+            initialPaddings = node.initialPadding
+        )
+        val typesToMargin = (marginTypes - node.deferredTypes).sidesWith(deferredTypes)
+        view.applyMargins(
+            typesToApply = typesToMargin,
+            resolvedInsets = insets.getPackedInsets(typesToMargin),
+            initialMargins = node.initialMargins
+        )
     }
 
     /**
@@ -497,20 +820,38 @@ class Insetter private constructor(
         view: View,
         insets: WindowInsetsCompat,
         initialState: ViewState
+    ) {
+        applyInsetsToView(
+            view = view,
+            insets = insets,
+            initialPaddings = initialState.paddings.toPackedInsets(),
+            initialMargins = initialState.margins.toPackedInsets(),
+            deferredTypes = InsetterNode.peek(view)?.deferredTypes ?: 0,
+        )
+    }
+
+    private fun applyInsetsToView(
+        view: View,
+        insets: WindowInsetsCompat,
+        initialPaddings: PackedInsets,
+        initialMargins: PackedInsets,
+        deferredTypes: Int,
     ) {
         if (Log.isLoggable(TAG, Log.DEBUG)) {
-            Log.d(TAG, "applyInsetsToView. View: $view. Insets: $insets. State: $initialState")
+            Log.d(TAG, "applyInsetsToView. View: $view. Insets: $insets")
         }
 
+        val typesToPad = paddingTypes - deferredTypes
         view.applyPadding(
-            insets = insets,
-            typesToApply = paddingTypes - currentlyDeferredTypes,
-            initialPaddings = initialState.paddings
+            typesToApply = typesToPad,
+            resolvedInsets = insets.getPackedInsets(typesToPad),
+            initialPaddings = initialPaddings
         )
+        val typesToMargin = marginTypes - deferredTypes
         view.applyMargins(
-            insets = insets,
-            typesToApply = marginTypes - currentlyDeferredTypes,
-            initialMargins = initialState.margins
+            typesToApply = typesToMargin,
+            resolvedInsets = insets.getPackedInsets(typesToMargin),
+            initialMargins = initialMargins
         )
     }
 
@@ -540,105 +881,43 @@ class Insetter private constructor(
 }
 
 /**
- * Internal class used to store which types to apply on each side using a given
- * application type (padding, margin, etc).
+ * Applies the window insets types specified in [typesToApply] as padding. The
+ * [resolvedInsets] contain the values of those types for each side, from
+ * [WindowInsetsCompat.getPackedInsets].
  */
-internal class SideApply {
-    @Sides
-    var left: Int = Side.NONE
-        private set
-
-    @Sides
-    var top: Int = Side.NONE
-        private set
-
-    @Sides
-    var right: Int = Side.NONE
-        private set
-
-    @Sides
-    var bottom: Int = Side.NONE
-        private set
-
-    val isEmpty: Boolean
-        get() = all == Side.NONE
-
-    val all: Int
-        get() = left or top or right or bottom
-
-    fun plus(insetTypes: Int, @Sides sides: Int = Side.ALL) {
-        if (sides and Side.LEFT != 0) left = left or insetTypes
-        if (sides and Side.TOP != 0) top = top or insetTypes
-        if (sides and Side.RIGHT != 0) right = right or insetTypes
-        if (sides and Side.BOTTOM != 0) bottom = bottom or insetTypes
-    }
-
-    operator fun plus(other: SideApply): SideApply {
-        if (other.isEmpty) return this
-
-        val lhs = this
-        return SideApply().apply {
-            left = lhs.left or other.left
-            top = lhs.top or other.top
-            right = lhs.right or other.right
-            bottom = lhs.bottom or other.bottom
-        }
-    }
-
-    operator fun minus(other: SideApply): SideApply {
-        if (isEmpty) return this
-        if (other.isEmpty) return this
-
-        val lhs = this
-        return SideApply().apply {
-            left = lhs.left and other.left.inv()
-            top = lhs.top and other.top.inv()
-            right = lhs.right and other.right.inv()
-            bottom = lhs.bottom and other.bottom.inv()
-        }
-    }
-
-    operator fun minus(type: Int): SideApply {
-        if (isEmpty) return this
-        if (type == 0) return this
-
-        val lhs = this
-        return SideApply().apply {
-            left = lhs.left and type.inv()
-            top = lhs.top and type.inv()
-            right = lhs.right and type.inv()
-            bottom = lhs.bottom and type.inv()
-        }
-    }
-}
-
-/**
- * Applies the window insets types specified in [typesToApply], using the source values
- * from [insets] as padding.
- */
-private fun View.applyPadding(
-    insets: WindowInsetsCompat,
+internal fun View.applyPadding(
     typesToApply: SideApply,
-    initialPaddings: ViewDimensions,
+    resolvedInsets: PackedInsets,
+    initialPaddings: PackedInsets,
 ) {
     // If there's no types to apply, nothing to do...
     if (typesToApply.isEmpty) return
 
     val paddingLeft = when (typesToApply.left) {
         Side.NONE -> paddingLeft
-        else -> initialPaddings.left + insets.getInsets(typesToApply.left).left
+        else -> initialPaddings.left + resolvedInsets.left
     }
     val paddingTop = when (typesToApply.top) {
         Side.NONE -> paddingTop
-        else -> initialPaddings.top + insets.getInsets(typesToApply.top).top
+        else -> initialPaddings.top + resolvedInsets.top
     }
     val paddingRight = when (typesToApply.right) {
         Side.NONE -> paddingRight
-        else -> initialPaddings.right + insets.getInsets(typesToApply.right).right
+        else -> initialPaddings.right + resolvedInsets.right
     }
     val paddingBottom = when (typesToApply.bottom) {
         Side.NONE -> paddingBottom
-        else -> initialPaddings.bottom + insets.getInsets(typesToApply.bottom).bottom
+        else -> initialPaddings.bottom + resolvedInsets.bottom
+    }
+
+    val metrics = InsetterMetrics.sink
+    if (metrics != null &&
+        (paddingLeft != this.paddingLeft || paddingTop != this.paddingTop ||
+            paddingRight != this.paddingRight || paddingBottom != this.paddingBottom)
+    ) {
+        // setPadding() requests a layout when any value has changed
+        metrics.onPaddingChanged(this)
+        metrics.onLayoutRequested(this)
     }
 
     // setPadding() does it's own value change check, so no need to do our own to avoid layout
@@ -646,15 +925,16 @@ private fun View.applyPadding(
 }
 
 /**
- * Applies the window insets types specified in [typesToApply], using the source values
- * from [insets] as margin.
+ * Applies the window insets types specified in [typesToApply] as margin. The
+ * [resolvedInsets] contain the values of those types for each side, from
+ * [WindowInsetsCompat.getPackedInsets].
  *
  * @throws IllegalArgumentException if [View.getLayoutParams] do not extend [MarginLayoutParams]
  */
 private fun View.applyMargins(
-    insets: WindowInsetsCompat,
     typesToApply: SideApply,
-    initialMargins: ViewDimensions,
+    resolvedInsets: PackedInsets,
+    initialMargins: PackedInsets,
 ) {
     // If there's no types to apply, nothing to do...
     if (typesToApply.isEmpty) return
@@ -667,82 +947,70 @@ private fun View.applyMargins(
 
     val marginLeft = when (typesToApply.left) {
         Side.NONE -> lp.leftMargin
-        else -> initialMargins.left + insets.getInsets(typesToApply.left).left
+        else -> initialMargins.left + resolvedInsets.left
     }
     val marginTop = when (typesToApply.top) {
         Side.NONE -> lp.topMargin
-        else -> initialMargins.top + insets.getInsets(typesToApply.top).top
+        else -> initialMargins.top + resolvedInsets.top
     }
     val marginRight = when (typesToApply.right) {
         Side.NONE -> lp.rightMargin
-        else -> initialMargins.right + insets.getInsets(typesToApply.right).right
+        else -> initialMargins.right + resolvedInsets.right
     }
     val marginBottom = when (typesToApply.bottom) {
         Side.NONE -> lp.bottomMargin
-        else -> initialMargins.bottom + insets.getInsets(typesToApply.bottom).bottom
+        else -> initialMargins.bottom + resolvedInsets.bottom
     }
 
     // Update the layoutParams margins. Will return true if any value has changed
     if (lp.updateMargins(marginLeft, marginTop, marginRight, marginBottom)) {
+        val metrics = InsetterMetrics.sink
+        metrics?.onMarginsChanged(this)
+
+        val batch = LayoutRequestBatch.current
+        if (batch != null) {
+            // If we're in a batch, the layout request is made once for the parent later
+            batch.onMarginsChanged(this)
+            return
+        }
+
         // If any margin value changed, re-set it back on the view to trigger a layout
         layoutParams = lp
+        metrics?.onLayoutRequested(this)
 
         if (Build.VERSION.SDK_INT < 26) {
             // See https://github.com/chrisbanes/insetter/issues/42
             parent.requestLayout()
+            (parent as? View)?.let { metrics?.onLayoutRequested(it) }
         }
     }
 }
 
 /**
- * Performs the given action when this view is attached to a window. If the view is already
- * attached to a window the action will be performed immediately, otherwise the
+ * Performs the given [onAttach] action when this view is attached to a window. If the view is
+ * already attached to a window the action will be performed immediately, otherwise the
  * action will first be performed after the view is next attached.
  *
- * The action will be invoked every time the view is attached to a window.
+ * The action will be invoked every time the view is attached to a window. The [onDetach] action
+ * is invoked every time the view is detached from a window.
+ *
+ * Returns the [View.OnAttachStateChangeListener] which was added, so that it can be removed.
  *
  * @see doOnAttach
  */
-private inline fun View.doOnEveryAttach(crossinline action: (view: View) -> Unit) {
-    addOnAttachStateChangeListener(object : View.OnAttachStateChangeListener {
-        override fun onViewAttachedToWindow(v: View) = action(v)
-
-        override fun onViewDetachedFromWindow(v: View) = Unit
-    })
+private inline fun View.doOnEveryAttach(
+    crossinline onAttach: (view: View) -> Unit,
+    crossinline onDetach: (view: View) -> Unit,
+): View.OnAttachStateChangeListener {
+    val listener = object : View.OnAttachStateChangeListener {
+        override fun onViewAttachedToWindow(v: View) = onAttach(v)
+
+        override fun onViewDetachedFromWindow(v: View) = onDetach(v)
+    }
+    addOnAttachStateChangeListener(listener)
 
     if (ViewCompat.isAttachedToWindow(this)) {
-        action(this)
+        onAttach(this)
     }
-}
-
-/**
- * Function which consumes the insets for the given [type], if it exists in the [applied] types.
- *
- * @param windowInsets The original [WindowInsetsCompat] to retrieve the original insets from.
- */
-private fun WindowInsetsCompat.Builder.consumeType(
-    type: Int,
-    windowInsets: WindowInsetsCompat,
-    applied: SideApply,
-): WindowInsetsCompat.Builder {
-    // Fast path. If this type wasn't applied at all, no need to do anything
-    if (applied.all and type != type) return this
-
-    // First we get the original insets for the type
-    val insets = windowInsets.getInsets(type)
-
-    // If the insets are empty, nothing to do
-    if (insets == Insets.NONE) return this
-
-    // Now set the insets, selectively 'consuming' (zero-ing out) any consumed sides.
-    setInsets(
-        type,
-        Insets.of(
-            if (applied.left and type != 0) 0 else insets.left,
-            if (applied.top and type != 0) 0 else insets.top,
-            if (applied.right and type != 0) 0 else insets.right,
-            if (applied.bottom and type != 0) 0 else insets.bottom
-        )
-    )
-    return this
+    return listener
 }
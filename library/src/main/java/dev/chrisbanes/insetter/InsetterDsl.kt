@@ -100,6 +100,31 @@ fun View.applyInsetter(build: InsetterDsl.() -> Unit): Insetter {
     return InsetterDsl().apply(build).builder.applyToView(this)
 }
 
+/**
+ * Applies the given [spec] to this view. See [InsetterSpec] for more information.
+ */
+fun View.applyInsetter(spec: InsetterSpec): Insetter = spec.applyToView(this)
+
+/**
+ * Builds an immutable [InsetterSpec] using the same DSL as [View.applyInsetter]. The spec can
+ * then be applied to many views:
+ *
+ * ```
+ * val spec = insetterSpec {
+ *     type(statusBars = true) {
+ *         padding(top = true)
+ *     }
+ * }
+ *
+ * view.applyInsetter(spec)
+ * ```
+ *
+ * @throws IllegalStateException if [InsetterDsl.syncTranslationTo] is used.
+ */
+fun insetterSpec(build: InsetterDsl.() -> Unit): InsetterSpec {
+    return InsetterDsl().apply(build).builder.buildSpec()
+}
+
 @DslMarker
 annotation class InsetterDslMarker
 
@@ -181,6 +206,30 @@ class InsetterDsl internal constructor() {
         builder = builder.consume(consume)
     }
 
+    /**
+     * @param skip whether to skip dispatches where the applied inset values have not changed.
+     * @see Insetter.Builder.skipUnchangedInsets
+     */
+    fun skipUnchangedInsets(skip: Boolean) {
+        builder = builder.skipUnchangedInsets(skip)
+    }
+
+    /**
+     * @param applyCached whether to apply the window's current insets when the view is attached.
+     * @see Insetter.Builder.applyCachedInsetsOnAttach
+     */
+    fun applyCachedInsetsOnAttach(applyCached: Boolean) {
+        builder = builder.applyCachedInsetsOnAttach(applyCached)
+    }
+
+    /**
+     * @param seed whether to apply estimated insets before the first window insets dispatch.
+     * @see Insetter.Builder.seedInitialInsets
+     */
+    fun seedInitialInsets(seed: Boolean) {
+        builder = builder.seedInitialInsets(seed)
+    }
+
     /**
      * When reacting to window insets animations it is often useful to apply the same
      * animated translation X and Y to other views. The views provided to this function
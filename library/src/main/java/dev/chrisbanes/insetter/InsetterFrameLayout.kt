@@ -0,0 +1,264 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.content.Context
+import android.util.AttributeSet
+import android.view.View
+import android.view.ViewGroup
+import android.view.ViewGroup.LayoutParams.MATCH_PARENT
+import android.view.WindowInsets
+import android.widget.FrameLayout
+import androidx.core.view.WindowInsetsCompat
+
+/**
+ * A [FrameLayout] which applies window insets to its children as part of its own measure
+ * pass, using rules set on each child's [LayoutParams].
+ *
+ * The children do not need their own window insets listeners. When the insets change, the
+ * container requests a single layout of itself, rather than each child requesting its own
+ * layout as its padding or margins are updated.
+ *
+ * ```
+ * val lp = InsetterFrameLayout.LayoutParams(MATCH_PARENT, WRAP_CONTENT)
+ *     // Add the status bar height to the top margin
+ *     .margin(WindowInsetsCompat.Type.statusBars(), Side.TOP)
+ *     // Add the navigation bar height to the bottom padding
+ *     .padding(WindowInsetsCompat.Type.navigationBars(), Side.BOTTOM)
+ * container.addView(child, lp)
+ * ```
+ *
+ * The window insets received by this layout are still dispatched to its children as normal.
+ * The layout does not use its own window insets listener, so to apply insets to the layout
+ * itself, apply an [Insetter] to it as you would to any other view. The rules of the children
+ * always use the insets which the layout receives, before the layout's own [Insetter] has
+ * handled or consumed them.
+ */
+class InsetterFrameLayout @JvmOverloads constructor(
+    context: Context,
+    attrs: AttributeSet? = null,
+    defStyleAttr: Int = 0,
+) : FrameLayout(context, attrs, defStyleAttr) {
+    private var lastInsets: WindowInsetsCompat? = null
+
+    /**
+     * Incremented whenever the insets change, so that each child's rules are only applied
+     * once for each set of insets.
+     */
+    private var insetsGeneration = 0
+
+    override fun dispatchApplyWindowInsets(insets: WindowInsets): WindowInsets {
+        // We read the insets here rather than in a window insets listener, so that the
+        // listener remains available for an Insetter applied to this layout
+        onInsetsReceived(WindowInsetsCompat.toWindowInsetsCompat(insets, this))
+        return super.dispatchApplyWindowInsets(insets)
+    }
+
+    private fun onInsetsReceived(insets: WindowInsetsCompat) {
+        // We only need to compare the types which our children use
+        val changedTypes = changedInsetTypes(lastInsets, insets, childInsetTypes())
+        lastInsets = insets
+        if (changedTypes != 0) {
+            insetsGeneration++
+            // A single layout request for all of the children
+            requestLayout()
+            InsetterMetrics.sink?.onLayoutRequested(this)
+        }
+    }
+
+    override fun onMeasure(widthMeasureSpec: Int, heightMeasureSpec: Int) {
+        val insets = lastInsets
+        if (insets != null) {
+            for (i in 0 until childCount) {
+                val child = getChildAt(i)
+                val lp = child.layoutParams as? LayoutParams ?: continue
+                if (lp.appliedGeneration != insetsGeneration) {
+                    lp.applyTo(child, insets)
+                    lp.appliedGeneration = insetsGeneration
+                }
+            }
+        }
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec)
+    }
+
+    private fun childInsetTypes(): Int {
+        var types = 0
+        for (i in 0 until childCount) {
+            val lp = getChildAt(i).layoutParams as? LayoutParams ?: continue
+            types = types or lp.paddingTypes.all or lp.marginTypes.all
+        }
+        return types
+    }
+
+    override fun checkLayoutParams(p: ViewGroup.LayoutParams?): Boolean = p is LayoutParams
+
+    override fun generateDefaultLayoutParams(): FrameLayout.LayoutParams {
+        return LayoutParams(MATCH_PARENT, MATCH_PARENT)
+    }
+
+    override fun generateLayoutParams(attrs: AttributeSet?): FrameLayout.LayoutParams {
+        return LayoutParams(context, attrs)
+    }
+
+    override fun generateLayoutParams(lp: ViewGroup.LayoutParams): ViewGroup.LayoutParams {
+        return when (lp) {
+            is LayoutParams -> LayoutParams(lp)
+            is FrameLayout.LayoutParams -> LayoutParams(lp as ViewGroup.MarginLayoutParams).also {
+                it.gravity = lp.gravity
+            }
+            is ViewGroup.MarginLayoutParams -> LayoutParams(lp)
+            else -> LayoutParams(lp)
+        }
+    }
+
+    /**
+     * Layout params for children of [InsetterFrameLayout], which contain the rules of which
+     * window insets to apply to the child.
+     *
+     * The child's padding and margins when the rules are first applied are used as the
+     * initial values, and the insets are added to them. Sides without any rules are left
+     * as-is. When the rules are changed on a child which is already attached, a layout is
+     * requested so that the new rules are applied.
+     */
+    class LayoutParams : FrameLayout.LayoutParams {
+        constructor(c: Context, attrs: AttributeSet?) : super(c, attrs)
+        constructor(width: Int, height: Int) : super(width, height)
+        constructor(source: ViewGroup.LayoutParams) : super(source)
+        constructor(source: ViewGroup.MarginLayoutParams) : super(source)
+        constructor(source: LayoutParams) : super(source as ViewGroup.MarginLayoutParams) {
+            gravity = source.gravity
+            paddingTypes = source.paddingTypes
+            marginTypes = source.marginTypes
+        }
+
+        internal var paddingTypes = SideApply.NONE
+        internal var marginTypes = SideApply.NONE
+
+        internal var appliedGeneration = -1
+
+        private var initialPadding = PackedInsets.NONE
+        private var initialMargins = PackedInsets.NONE
+        private var initialPaddingCaptured = false
+        private var initialMarginsCaptured = false
+
+        /** The child which these layout params were last applied to */
+        private var child: View? = null
+
+        /**
+         * Apply the given [WindowInsetsCompat.Type][insetType] as padding of the child.
+         *
+         * @param insetType Bit mask of [WindowInsetsCompat.Type]s to apply as padding.
+         * The [windowInsetTypesOf] function is useful for creating the bit mask.
+         * @param sides Bit mask of [Side]s containing which sides to apply.
+         * Defaults to [Side.ALL] to apply all sides. The mask can be created via [sidesOf].
+         */
+        @JvmOverloads
+        fun padding(insetType: Int, @Sides sides: Int = Side.ALL): LayoutParams {
+            paddingTypes = paddingTypes.plus(insetType, sides)
+            onRulesChanged()
+            return this
+        }
+
+        /**
+         * Apply the given [WindowInsetsCompat.Type][insetType] as margin of the child.
+         *
+         * @param insetType Bit mask of [WindowInsetsCompat.Type]s to apply as margin.
+         * The [windowInsetTypesOf] function is useful for creating the bit mask.
+         * @param sides Bit mask of [Side]s containing which sides to apply.
+         * Defaults to [Side.ALL] to apply all sides. The mask can be created via [sidesOf].
+         */
+        @JvmOverloads
+        fun margin(insetType: Int, @Sides sides: Int = Side.ALL): LayoutParams {
+            marginTypes = marginTypes.plus(insetType, sides)
+            onRulesChanged()
+            return this
+        }
+
+        private fun onRulesChanged() {
+            appliedGeneration = -1
+            // Once attached, the rules are only applied in the parent's next measure pass.
+            // The layout params are the child's own, so we request a layout via the child.
+            child?.requestLayout()
+        }
+
+        internal fun applyTo(child: View, insets: WindowInsetsCompat) {
+            this.child = child
+            if (!paddingTypes.isEmpty) {
+                if (!initialPaddingCaptured) {
+                    initialPadding = currentPaddingOf(child)
+                    initialPaddingCaptured = true
+                }
+                // setPadding() is only called if the padding has changed. That requests a
+                // layout of the child, which is within our own pending layout
+                child.applyPadding(
+                    paddingTypes,
+                    insets.getPackedInsets(paddingTypes),
+                    initialPadding,
+                )
+            }
+
+            if (!marginTypes.isEmpty) {
+                if (!initialMarginsCaptured) {
+                    initialMargins = currentMargins()
+                    initialMarginsCaptured = true
+                }
+                // We're about to be measured, so we update the margins in place rather than
+                // setting the layout params, which would request another layout
+                val resolved = insets.getPackedInsets(marginTypes)
+                val margins = PackedInsets.of(
+                    left = when (marginTypes.left) {
+                        Side.NONE -> leftMargin
+                        else -> initialMargins.left + resolved.left
+                    },
+                    top = when (marginTypes.top) {
+                        Side.NONE -> topMargin
+                        else -> initialMargins.top + resolved.top
+                    },
+                    right = when (marginTypes.right) {
+                        Side.NONE -> rightMargin
+                        else -> initialMargins.right + resolved.right
+                    },
+                    bottom = when (marginTypes.bottom) {
+                        Side.NONE -> bottomMargin
+                        else -> initialMargins.bottom + resolved.bottom
+                    },
+                )
+                if (margins != currentMargins()) {
+                    InsetterMetrics.sink?.onMarginsChanged(child)
+                    leftMargin = margins.left
+                    topMargin = margins.top
+                    rightMargin = margins.right
+                    bottomMargin = margins.bottom
+                }
+            }
+        }
+
+        private fun currentMargins() = PackedInsets.of(
+            left = leftMargin,
+            top = topMargin,
+            right = rightMargin,
+            bottom = bottomMargin,
+        )
+
+        private fun currentPaddingOf(child: View) = PackedInsets.of(
+            left = child.paddingLeft,
+            top = child.paddingTop,
+            right = child.paddingRight,
+            bottom = child.paddingBottom,
+        )
+    }
+}
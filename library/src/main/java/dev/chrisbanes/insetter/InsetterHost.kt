@@ -0,0 +1,323 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.view.View
+import android.view.ViewGroup
+import androidx.core.view.OnApplyWindowInsetsListener
+import androidx.core.view.ViewCompat
+import androidx.core.view.WindowInsetsAnimationCompat
+import androidx.core.view.WindowInsetsCompat
+
+/**
+ * A host which receives [WindowInsetsCompat] once on a root view, and then dispatches them
+ * directly to any [Insetter]s which have been applied to views within it.
+ *
+ * Normally each dispatch of window insets walks through every view in the hierarchy, to reach
+ * the few views which have an [Insetter]. With a host installed, the cost of each dispatch
+ * instead scales with the number of views with an [Insetter].
+ *
+ * ```
+ * InsetterHost.install(binding.root)
+ * ```
+ *
+ * Any [Insetter] which is applied to a view within the host will automatically register
+ * itself with the host when the view is attached, and unregister when it is detached. Views
+ * which are already attached when the host is installed are registered by [install]. On each
+ * dispatch the host computes which types have changed (via [changedInsetTypes]), and only
+ * dispatches to the [Insetter]s which are interested in those types.
+ *
+ * The host also installs a single [WindowInsetsAnimationCompat.Callback] on the root view,
+ * which drives the animations of all of the registered [Insetter]s, rather than each view
+ * installing its own callback.
+ *
+ * Note: the host consumes all of the insets which it receives, therefore views within the
+ * host which do not use an [Insetter] will not receive any insets. Similarly, each [Insetter]
+ * receives the insets which were dispatched to the host, so any consumption by an
+ * [Insetter] does not affect the insets received by other [Insetter]s.
+ *
+ * The host should be installed on the root view of your layout, rather than the window's
+ * decor view, since the decor view uses the insets for its own purposes. The host uses the
+ * root view's window insets listener, so an [Insetter] applied to the root view is registered
+ * with the host like any other view, regardless of whether it is applied before or after the
+ * host is installed.
+ *
+ * Hosts can be nested, such as when a layout with its own host is added within another host.
+ * The nested host registers itself with the outer host when its root view is attached, and
+ * the outer host then forwards all of the insets which it receives to the nested host.
+ *
+ * By enabling [batchMarginUpdates], any margin changes made during a dispatch are committed
+ * together, with a single layout request for each affected parent.
+ */
+class InsetterHost private constructor(
+    private val root: View,
+) {
+    private val entries = ArrayList<Entry>()
+
+    /** The combined types which the registered entries are interested in */
+    private var observedTypes = 0
+    private var lastInsets: WindowInsetsCompat? = null
+
+    private var animationCallbackInstalled = false
+
+    private var layoutRequestBatch: LayoutRequestBatch? = null
+
+    /**
+     * Whether margin changes made during each dispatch should be batched. When enabled, any
+     * views whose margins change are marked as needing layout, and then a single layout
+     * request is made for each of their parents, once all of the views have been updated.
+     *
+     * Defaults to false.
+     */
+    var batchMarginUpdates: Boolean = false
+        set(value) {
+            field = value
+            layoutRequestBatch = if (value) LayoutRequestBatch() else null
+        }
+
+    /**
+     * The number of layout requests which have been avoided due to [batchMarginUpdates].
+     */
+    var avoidedLayoutRequestCount: Int = 0
+        private set
+
+    /**
+     * A single animation callback for the whole host. The running types and translation are
+     * calculated once per frame, and then shared with all of the registered animation targets.
+     */
+    private val animationCallback = object : WindowInsetsAnimationCompat.Callback(
+        DISPATCH_MODE_CONTINUE_ON_SUBTREE
+    ) {
+        private val translation = AnimatedTranslation()
+
+        override fun onPrepare(animation: WindowInsetsAnimationCompat) {
+            val typeMask = animation.typeMask
+            for (i in 0 until entries.size) {
+                entries[i].animationTarget?.onAnimationPrepare(typeMask)
+            }
+        }
+
+        override fun onProgress(
+            insets: WindowInsetsCompat,
+            runningAnimations: List<WindowInsetsAnimationCompat>
+        ): WindowInsetsCompat {
+            val runningTypes = runningTypesOf(runningAnimations)
+            if (runningTypes == 0) return insets
+
+            for (i in 0 until entries.size) {
+                entries[i].animationTarget?.onAnimationProgress(insets, runningTypes, translation)
+            }
+            return insets
+        }
+
+        override fun onEnd(animation: WindowInsetsAnimationCompat) {
+            val typeMask = animation.typeMask
+            for (i in 0 until entries.size) {
+                entries[i].animationTarget?.onAnimationEnd(typeMask)
+            }
+            translation.reset()
+        }
+    }
+
+    /** The host which this host's root view is currently registered with, if it is nested */
+    private var outerHost: InsetterHost? = null
+
+    private val rootListener = OnApplyWindowInsetsListener { _, insets ->
+        // We only need to compare the types which the registered entries are interested in
+        val changedTypes = changedInsetTypes(lastInsets, insets, observedTypes)
+        lastInsets = insets
+        dispatch(insets, changedTypes)
+        // We've dispatched the insets to everything which is interested, so there's no
+        // need for the framework to dispatch them through the rest of the hierarchy
+        WindowInsetsCompat.CONSUMED
+    }
+
+    init {
+        ViewCompat.setOnApplyWindowInsetsListener(root, rootListener)
+        // Any Insetter which was applied to the root view has just lost the listener slot,
+        // and is registered with us instead
+        InsetterNode.peek(root)?.listenerSetOnView = false
+
+        root.addOnAttachStateChangeListener(
+            object : View.OnAttachStateChangeListener {
+                override fun onViewAttachedToWindow(v: View) = registerWithOuterHost()
+
+                override fun onViewDetachedFromWindow(v: View) {
+                    outerHost?.unregister(root)
+                    outerHost = null
+                }
+            }
+        )
+    }
+
+    /**
+     * If this host is nested within another host, registers our root view with it. The outer
+     * host consumes all of the insets, so it needs to forward them to us.
+     */
+    private fun registerWithOuterHost() {
+        val parent = root.parent as? View ?: return
+        val outer = of(parent) ?: return
+        outerHost = outer
+        outer.register(root, ALL_INSET_TYPES, rootListener, null)
+    }
+
+    private fun dispatch(insets: WindowInsetsCompat, changedTypes: Int) {
+        // Fast path. If nothing has changed, there's nothing to update
+        if (changedTypes == 0) return
+
+        val batch = layoutRequestBatch
+        batch?.begin()
+        try {
+            // We use an indexed loop, to avoid allocating an iterator on each dispatch
+            for (i in 0 until entries.size) {
+                val entry = entries[i]
+                // We only need to notify the entries which are interested in the changed types
+                if (entry.types and changedTypes != 0) {
+                    entry.listener.onApplyWindowInsets(entry.view, insets)
+                }
+            }
+        } finally {
+            if (batch != null) {
+                avoidedLayoutRequestCount += batch.commit()
+            }
+        }
+    }
+
+    /**
+     * Registers the given [listener] for the [view], which is interested in the given
+     * [types]. If the host has previously received insets, they are immediately dispatched
+     * to the [listener].
+     *
+     * If an [animationTarget] is provided, it will receive the events from the host's shared
+     * window insets animation callback.
+     */
+    internal fun register(
+        view: View,
+        types: Int,
+        listener: OnApplyWindowInsetsListener,
+        animationTarget: InsetsAnimationTarget?,
+    ) {
+        unregister(view)
+        entries += Entry(view, types, listener, animationTarget)
+        observedTypes = observedTypes or types
+
+        // If the root view's own Insetter is being registered, it may have just removed our
+        // animation callback from the root view, so we set it again
+        if ((animationTarget != null && !animationCallbackInstalled) ||
+            (view === root && animationCallbackInstalled)
+        ) {
+            ViewCompat.setWindowInsetsAnimationCallback(root, animationCallback)
+            animationCallbackInstalled = true
+        }
+
+        val insets = lastInsets
+        if (insets != null) {
+            listener.onApplyWindowInsets(view, insets)
+        } else {
+            // We haven't received any insets yet, so request a pass
+            InsetsRequestScheduler.of(root).requestApplyInsets()
+        }
+    }
+
+    /**
+     * Registers any views within [view] (including itself) which have an [Insetter] applied.
+     * Any views within a nested host are left registered with that host, and the nested host
+     * is registered instead.
+     */
+    private fun registerAttachedViews(view: View) {
+        val nested = view.getTag(R.id.insetter_host) as? InsetterHost
+        if (nested != null && nested !== this) {
+            nested.registerWithOuterHost()
+            return
+        }
+
+        val node = InsetterNode.peek(view)
+        if (node != null && node.insetter != null) {
+            node.registerWith(view, this)
+        }
+        if (view is ViewGroup) {
+            for (i in 0 until view.childCount) {
+                registerAttachedViews(view.getChildAt(i))
+            }
+        }
+    }
+
+    /**
+     * Unregisters any listener which was previously registered for the [view].
+     */
+    internal fun unregister(view: View) {
+        // This is called on every attach and detach, so we use an indexed loop, and only
+        // recompute the observed types if an entry was removed. A view has at most one entry.
+        for (i in 0 until entries.size) {
+            if (entries[i].view === view) {
+                entries.removeAt(i)
+                var types = 0
+                for (j in 0 until entries.size) {
+                    types = types or entries[j].types
+                }
+                observedTypes = types
+                return
+            }
+        }
+    }
+
+    private class Entry(
+        val view: View,
+        val types: Int,
+        val listener: OnApplyWindowInsetsListener,
+        val animationTarget: InsetsAnimationTarget?,
+    )
+
+    companion object {
+        /**
+         * Installs an [InsetterHost] on the given [root] view. If a host has already been
+         * installed on the view, that instance is returned.
+         */
+        @JvmStatic
+        fun install(root: View): InsetterHost {
+            val tagged = root.getTag(R.id.insetter_host) as? InsetterHost
+            if (tagged != null) return tagged
+
+            val host = InsetterHost(root)
+            root.setTag(R.id.insetter_host, host)
+            if (ViewCompat.isAttachedToWindow(root)) {
+                // The host consumes all of the insets, so any views which are already attached
+                // need to be registered now, since they won't be attached again. This moves
+                // them from any outer host, so we register with the outer host afterwards.
+                host.registerAttachedViews(root)
+                host.registerWithOuterHost()
+                // Request a new pass so that the host receives the current insets
+                InsetsRequestScheduler.of(root).requestApplyInsets()
+            }
+            return host
+        }
+
+        /**
+         * Returns the [InsetterHost] which contains the given [view], or null if the view is
+         * not within a host.
+         */
+        internal fun of(view: View): InsetterHost? {
+            var v: View? = view
+            while (v != null) {
+                val tagged = v.getTag(R.id.insetter_host) as? InsetterHost
+                if (tagged != null) return tagged
+                v = v.parent as? View
+            }
+            return null
+        }
+    }
+}
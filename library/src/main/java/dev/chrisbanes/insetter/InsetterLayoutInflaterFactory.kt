@@ -0,0 +1,471 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.content.Context
+import android.content.res.Configuration
+import android.content.res.XmlResourceParser
+import android.os.Build
+import android.util.AttributeSet
+import android.util.SparseArray
+import android.view.LayoutInflater
+import android.view.View
+import android.view.ViewGroup
+import androidx.annotation.LayoutRes
+import androidx.core.view.LayoutInflaterCompat
+import androidx.core.view.ViewCompat
+import org.xmlpull.v1.XmlPullParser
+import java.lang.ref.WeakReference
+
+/**
+ * A [LayoutInflater.Factory2] which reads the `insetter*` attributes from layout XML, and
+ * applies an [InsetterSpec] to any view which uses them:
+ *
+ * ``` xml
+ * <ImageView
+ *     xmlns:insetter="http://schemas.android.com/apk/res-auto"
+ *     insetter:insetterPaddingTypes="statusBars|navigationBars"
+ *     insetter:insetterPaddingSides="top|bottom"
+ *     insetter:insetterMarginTypes="displayCutout"
+ *     insetter:insetterMarginSides="left|right"
+ *     insetter:insetterConsumeOption="auto" />
+ * ```
+ *
+ * The factory is installed via [install], which should be called before the inflater is used,
+ * and before any other factory is set. To keep any existing factory behavior, such as the
+ * `AppCompatDelegate` from AppCompat, pass it as the `delegate`.
+ *
+ * The attributes need to be set on the element itself, or via its `style`. Attributes with
+ * literal values in compiled layout XML are read directly from the XML, without resolving
+ * them against the theme, and views with the same values share a single cached spec. This
+ * applies to layouts inflated directly via the [LayoutInflater].
+ *
+ * Layouts which are inflated via [inflate] also have the results of their attribute parsing
+ * cached per layout, so that inflating the same layout again (such as list items) does not
+ * read any attributes, including those which use references or styles. The cache is cleared
+ * whenever the configuration of the inflater's context changes, since the layout and its
+ * attribute values may depend on it.
+ *
+ * The spec is applied when each view is first attached, once its layout params have been set.
+ * If the factory can not create a view itself, such as for a class which a custom
+ * [LayoutInflater] resolves, the [LayoutInflater] creates it and the spec is applied to it
+ * once it has been added to its parent. This is not possible for the root view of a layout.
+ *
+ * The factory can be used to inflate layouts on a background thread, such as via
+ * `AsyncLayoutInflater`. The spec is still applied on the main thread, when each view is first
+ * attached.
+ */
+class InsetterLayoutInflaterFactory private constructor(
+    private val inflater: LayoutInflater,
+    private val delegate: LayoutInflater.Factory2?,
+) : LayoutInflater.Factory2 {
+    /**
+     * The cached results for each layout resource, inflated via [inflate]. Access is
+     * synchronized on the cache, since layouts may be inflated on multiple threads.
+     */
+    private val layoutCache = SparseArray<LayoutSpecs>()
+
+    /** The configuration which the [layoutCache] is valid for. Guarded by the cache. */
+    private var cacheConfiguration: Configuration? = null
+
+    /** The layout which is currently being inflated via [inflate] on each thread */
+    private val currentInflation = object : ThreadLocal<InflationState>() {
+        override fun initialValue() = InflationState()
+    }
+
+    /**
+     * Inflates the given [resource] via the [LayoutInflater], caching the attribute parsing
+     * for the layout so that future inflations of it do not need to parse any attributes.
+     *
+     * @see LayoutInflater.inflate
+     */
+    @JvmOverloads
+    fun inflate(
+        @LayoutRes resource: Int,
+        root: ViewGroup?,
+        attachToRoot: Boolean = root != null,
+    ): View {
+        val state = currentInflation.get()!!
+        // Save the current state, in case this is a nested inflation
+        val previousLayout = state.layout
+        val previousElementIndex = state.elementIndex
+
+        val layout = synchronized(layoutCache) {
+            // The layout resource which is used, and the values of its attributes, can differ
+            // between configurations, so the cached results are only valid for one
+            val configuration = inflater.context.resources.configuration
+            if (configuration != cacheConfiguration) {
+                layoutCache.clear()
+                cacheConfiguration = Configuration(configuration)
+            }
+            layoutCache[resource] ?: LayoutSpecs().also { layoutCache.put(resource, it) }
+        }
+        state.layout = layout
+        state.elementIndex = 0
+        try {
+            val view = inflater.inflate(resource, root, attachToRoot)
+            // We have now seen every element of the layout
+            synchronized(layout) { layout.complete = true }
+            return view
+        } finally {
+            state.layout = previousLayout
+            state.elementIndex = previousElementIndex
+            // Every element of the layout has been added to its parent now
+            state.resolvePendingSpecs(null)
+        }
+    }
+
+    override fun onCreateView(
+        parent: View?,
+        name: String,
+        context: Context,
+        attrs: AttributeSet,
+    ): View? {
+        val state = currentInflation.get()!!
+        // Any view which the LayoutInflater created after our last call has been added to
+        // its parent by now, if the element has ended
+        state.resolvePendingSpecs(attrs)
+
+        val delegateView = delegate?.onCreateView(parent, name, context, attrs)
+
+        val spec = specFor(name, context, attrs) ?: return delegateView
+        val view = delegateView ?: createView(name, context, attrs)
+        if (view == null) {
+            // The LayoutInflater will create the view itself, so we apply the spec to the
+            // view once it has been added to the parent. The root element of a layout may not
+            // be added to the parent, so we can't find it.
+            val depth = (attrs as? XmlPullParser)?.depth ?: 0
+            if (parent is ViewGroup && depth > 1) {
+                state.addPendingSpec(PendingSpec(spec, parent, attrs))
+            }
+            return null
+        }
+        // The view's layout params have not been set yet, so we wait until it is attached
+        spec.deferUntilAttached(view)
+        return view
+    }
+
+    override fun onCreateView(name: String, context: Context, attrs: AttributeSet): View? {
+        return onCreateView(null, name, context, attrs)
+    }
+
+    private fun specFor(name: String, context: Context, attrs: AttributeSet): InsetterSpec? {
+        val state = currentInflation.get()!!
+        val layout = state.layout ?: return parseSpec(context, attrs)
+
+        val index = state.elementIndex++
+        synchronized(layout) {
+            if (layout.complete && index < layout.names.size && layout.names[index] == name) {
+                // We've already parsed this element in a previous inflation
+                return layout.specs[index]
+            }
+        }
+
+        val spec = parseSpec(context, attrs)
+        synchronized(layout) {
+            if (!layout.complete && index == layout.names.size) {
+                layout.names += name
+                layout.specs += spec
+            }
+        }
+        return spec
+    }
+
+    private fun createView(name: String, context: Context, attrs: AttributeSet): View? {
+        val elementInflater = inflaterFor(context)
+        if (name.indexOf('.') != -1) {
+            return createView(elementInflater, name, null, context, attrs)
+        }
+        // Framework views are declared without their package
+        for (prefix in FRAMEWORK_PREFIXES) {
+            createView(elementInflater, name, prefix, context, attrs)?.let { return it }
+        }
+        return null
+    }
+
+    /**
+     * Returns the inflater to create views for the given [context] with. Before API 29 views
+     * are created with the inflater's own context, so we need an inflater for the element's
+     * context. Otherwise any android:theme would be lost.
+     */
+    private fun inflaterFor(context: Context): LayoutInflater {
+        if (Build.VERSION.SDK_INT >= 29 || context === inflater.context) return inflater
+
+        // The children of an element with an android:theme share its context, so we reuse
+        // the inflater which we last cloned on this thread
+        val state = currentInflation.get()!!
+        val cloned = state.clonedInflater?.get()
+        if (cloned != null && cloned.context === context) return cloned
+
+        return inflater.cloneInContext(context).also {
+            // We only keep a weak reference, so that we don't keep the context alive
+            state.clonedInflater = WeakReference(it)
+        }
+    }
+
+    private fun createView(
+        elementInflater: LayoutInflater,
+        name: String,
+        prefix: String?,
+        context: Context,
+        attrs: AttributeSet,
+    ): View? = try {
+        if (Build.VERSION.SDK_INT >= 29) {
+            elementInflater.createView(context, name, prefix, attrs)
+        } else {
+            elementInflater.createView(name, prefix, attrs)
+        }
+    } catch (e: ClassNotFoundException) {
+        null
+    }
+
+    /** The inflation state of a thread */
+    private class InflationState {
+        /** The layout which is currently being inflated via [inflate] */
+        var layout: LayoutSpecs? = null
+        var elementIndex = 0
+
+        /** The inflater which was last cloned for an element's context, before API 29 */
+        var clonedInflater: WeakReference<LayoutInflater>? = null
+
+        /** The specs for views which the LayoutInflater is creating itself */
+        private var pendingSpecs: ArrayList<PendingSpec>? = null
+
+        fun addPendingSpec(pending: PendingSpec) {
+            val pendingSpecs = pendingSpecs ?: ArrayList<PendingSpec>(1)
+                .also { pendingSpecs = it }
+            pendingSpecs += pending
+        }
+
+        /**
+         * Resolves any pending specs whose views have been added to their parent. If [attrs]
+         * is not null, only the specs from the same layout inflation are resolved, since the
+         * elements of other inflations may not have ended yet.
+         */
+        fun resolvePendingSpecs(attrs: AttributeSet?) {
+            val pendingSpecs = pendingSpecs ?: return
+            // We iterate backwards, since we remove resolved specs as we go
+            for (i in pendingSpecs.size - 1 downTo 0) {
+                if (pendingSpecs[i].resolve(attrs)) pendingSpecs.removeAt(i)
+            }
+            if (pendingSpecs.isEmpty()) this.pendingSpecs = null
+        }
+    }
+
+    /**
+     * A [spec] for a view which the LayoutInflater creates itself, after we have returned null.
+     * Once the view's element has been inflated, the view is added to the [parent] at the
+     * index which is the parent's current child count. This is detected by the next element of
+     * the same inflation, at the end of [inflate], or when the parent is attached.
+     */
+    private class PendingSpec(
+        private val spec: InsetterSpec,
+        parent: ViewGroup,
+        attrs: AttributeSet,
+    ) : View.OnAttachStateChangeListener {
+        private val index = parent.childCount
+        // We only keep weak references, so that any pending spec which is never resolved does
+        // not keep the views or the layout's parser alive
+        private val parent = WeakReference(parent)
+        private val attrs = WeakReference(attrs)
+        private var resolved = false
+
+        init {
+            if (!ViewCompat.isAttachedToWindow(parent)) {
+                parent.addOnAttachStateChangeListener(this)
+            }
+        }
+
+        /**
+         * Applies the spec if the view has been added to the parent. Returns true if this spec
+         * no longer needs to be resolved.
+         */
+        fun resolve(attrs: AttributeSet?): Boolean {
+            if (resolved) return true
+            val parent = parent.get()
+            if (parent == null || this.attrs.get() == null) return true
+            if (attrs != null && attrs !== this.attrs.get()) return false
+            // During inflation children are only appended, so the view is at our index
+            if (parent.childCount <= index) return false
+
+            resolved = true
+            parent.removeOnAttachStateChangeListener(this)
+            spec.deferUntilAttached(parent.getChildAt(index))
+            return true
+        }
+
+        override fun onViewAttachedToWindow(v: View) {
+            v.removeOnAttachStateChangeListener(this)
+            resolve(null)
+        }
+
+        override fun onViewDetachedFromWindow(v: View) = Unit
+    }
+
+    /**
+     * The results of parsing each element of a layout, in inflation order. The names are
+     * stored so that we can detect layouts whose elements differ between inflations. Access
+     * is synchronized on the instance.
+     */
+    private class LayoutSpecs {
+        val names = ArrayList<String>()
+        val specs = ArrayList<InsetterSpec?>()
+        var complete = false
+    }
+
+    companion object {
+        private val FRAMEWORK_PREFIXES = arrayOf(
+            "android.widget.",
+            "android.view.",
+            "android.webkit.",
+            "android.app.",
+        )
+
+        /**
+         * Creates an [InsetterLayoutInflaterFactory] and sets it as the factory of the given
+         * [inflater].
+         *
+         * @param delegate An optional factory which is used to create views first, such as
+         * the existing factory of an `AppCompatActivity`.
+         * @throws IllegalStateException if the [inflater] already has a factory set.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun install(
+            inflater: LayoutInflater,
+            delegate: LayoutInflater.Factory2? = null,
+        ): InsetterLayoutInflaterFactory {
+            val factory = InsetterLayoutInflaterFactory(inflater, delegate)
+            LayoutInflaterCompat.setFactory2(inflater, factory)
+            return factory
+        }
+    }
+}
+
+/**
+ * The shared [InsetterSpec] for each set of parsed attributes, so that views with the same
+ * attributes (in any layout) share a single spec. Access is synchronized on the cache.
+ */
+private val attrSpecCache = HashMap<ParsedAttrs, InsetterSpec>()
+
+private data class ParsedAttrs(
+    val paddingTypes: Int,
+    val paddingSides: Int,
+    val marginTypes: Int,
+    val marginSides: Int,
+    val consume: Int,
+)
+
+private fun parseSpec(context: Context, attrs: AttributeSet): InsetterSpec? {
+    // If the view doesn't use any of the attributes, there's nothing to apply
+    if (!mayHaveInsetterAttrs(attrs)) return null
+
+    val parsed = readCompiledAttrs(attrs) ?: readStyledAttrs(context, attrs)
+    if (parsed.paddingTypes == 0 && parsed.marginTypes == 0) return null
+
+    return synchronized(attrSpecCache) {
+        attrSpecCache.getOrPut(parsed) {
+            Insetter.builder()
+                .padding(parsed.paddingTypes, parsed.paddingSides)
+                .margin(parsed.marginTypes, parsed.marginSides)
+                .consume(parsed.consume)
+                .buildSpec()
+        }
+    }
+}
+
+/**
+ * Returns false if the element definitely does not set any of the attributes: it is compiled
+ * XML, has no style, and none of its attributes are ours. Most elements do not use them, so
+ * this allows us to skip resolving their attributes entirely.
+ */
+private fun mayHaveInsetterAttrs(attrs: AttributeSet): Boolean {
+    if (attrs !is XmlResourceParser || attrs.styleAttribute != 0) return true
+    for (i in 0 until attrs.attributeCount) {
+        if (isInsetterAttr(attrs.getAttributeNameResource(i))) return true
+    }
+    return false
+}
+
+private fun isInsetterAttr(resId: Int): Boolean = resId == R.attr.insetterPaddingTypes ||
+    resId == R.attr.insetterPaddingSides ||
+    resId == R.attr.insetterMarginTypes ||
+    resId == R.attr.insetterMarginSides ||
+    resId == R.attr.insetterConsumeOption
+
+/**
+ * Reads the attributes directly from compiled layout XML, without resolving them against the
+ * theme. Returns null if that is not possible, such as when the element has a style, or an
+ * attribute value is a reference.
+ */
+private fun readCompiledAttrs(attrs: AttributeSet): ParsedAttrs? {
+    if (attrs !is XmlResourceParser || attrs.styleAttribute != 0) return null
+
+    var paddingTypes = 0
+    var paddingSides = Side.ALL
+    var marginTypes = 0
+    var marginSides = Side.ALL
+    var consume = Insetter.CONSUME_NONE
+    for (i in 0 until attrs.attributeCount) {
+        val resId = attrs.getAttributeNameResource(i)
+        if (!isInsetterAttr(resId)) continue
+
+        // References, and any other values which are not literal integers, need resolving
+        val value = attrs.getAttributeIntValue(i, NOT_LITERAL)
+        if (value == NOT_LITERAL) return null
+        when (resId) {
+            R.attr.insetterPaddingTypes -> paddingTypes = typesFromAttr(value)
+            R.attr.insetterPaddingSides -> paddingSides = value
+            R.attr.insetterMarginTypes -> marginTypes = typesFromAttr(value)
+            R.attr.insetterMarginSides -> marginSides = value
+            R.attr.insetterConsumeOption -> consume = value
+        }
+    }
+    return ParsedAttrs(paddingTypes, paddingSides, marginTypes, marginSides, consume)
+}
+
+/** A value which none of our attributes can have, used to detect non-literal values */
+private const val NOT_LITERAL = Int.MIN_VALUE
+
+private fun readStyledAttrs(context: Context, attrs: AttributeSet): ParsedAttrs {
+    val a = context.obtainStyledAttributes(attrs, R.styleable.Insetter)
+    return try {
+        ParsedAttrs(
+            paddingTypes = typesFromAttr(a.getInt(R.styleable.Insetter_insetterPaddingTypes, 0)),
+            paddingSides = a.getInt(R.styleable.Insetter_insetterPaddingSides, Side.ALL),
+            marginTypes = typesFromAttr(a.getInt(R.styleable.Insetter_insetterMarginTypes, 0)),
+            marginSides = a.getInt(R.styleable.Insetter_insetterMarginSides, Side.ALL),
+            consume = a.getInt(R.styleable.Insetter_insetterConsumeOption, Insetter.CONSUME_NONE),
+        )
+    } finally {
+        a.recycle()
+    }
+}
+
+/**
+ * Converts the flags from the `insetter*Types` attributes to [WindowInsetsCompat.Type]s.
+ */
+private fun typesFromAttr(flags: Int): Int = windowInsetTypesOf(
+    statusBars = flags and 0x1 != 0,
+    navigationBars = flags and 0x2 != 0,
+    captionBar = flags and 0x4 != 0,
+    ime = flags and 0x8 != 0,
+    systemGestures = flags and 0x10 != 0,
+    mandatorySystemGestures = flags and 0x20 != 0,
+    tappableElement = flags and 0x40 != 0,
+    displayCutout = flags and 0x80 != 0,
+)
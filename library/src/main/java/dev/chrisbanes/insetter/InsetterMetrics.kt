@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.view.View
+
+/**
+ * A sink for events about the work which the library does, such as the number of window
+ * insets dispatches and the layout requests which they cause. This is useful for feeding
+ * into your own performance telemetry.
+ *
+ * Metrics are disabled by default. To enable them, extend this class, overriding the
+ * functions for the events you're interested in, and set an instance as [sink]:
+ *
+ * ```
+ * InsetterMetrics.sink = object : InsetterMetrics() {
+ *     override fun onAnimationFrame(insetter: Insetter, view: View, durationNanos: Long) {
+ *         telemetry.record("insetter_frame", durationNanos)
+ *     }
+ * }
+ * ```
+ *
+ * All of the functions are called on the main thread, and should return quickly. When no
+ * [sink] is set, the only cost is a null check at each event.
+ */
+abstract class InsetterMetrics {
+    /**
+     * Called when the [insetter] which is applied to the [view] receives window insets.
+     */
+    open fun onDispatch(insetter: Insetter, view: View) = Unit
+
+    /**
+     * Called when a dispatch to the [insetter] applied to the [view] is skipped, since the
+     * values of the types which it applies have not changed.
+     *
+     * @see Insetter.Builder.skipUnchangedInsets
+     */
+    open fun onDispatchSkipped(insetter: Insetter, view: View) = Unit
+
+    /**
+     * Called when the padding of the [view] has been changed.
+     */
+    open fun onPaddingChanged(view: View) = Unit
+
+    /**
+     * Called when the margins of the [view] have been changed.
+     */
+    open fun onMarginsChanged(view: View) = Unit
+
+    /**
+     * Called when the library requests a layout of the [view].
+     */
+    open fun onLayoutRequested(view: View) = Unit
+
+    /**
+     * Called when the library requests a new window insets pass for the window of the given
+     * [root] view.
+     *
+     * @see InsetsRequestScheduler
+     */
+    open fun onApplyInsetsRequested(root: View) = Unit
+
+    /**
+     * Called after the [insetter] applied to the [view] has processed a frame of a window
+     * insets animation, which took [durationNanos] nanoseconds.
+     */
+    open fun onAnimationFrame(insetter: Insetter, view: View, durationNanos: Long) = Unit
+
+    companion object {
+        /**
+         * The [InsetterMetrics] which receives events, or null to disable metrics. This
+         * should only be set on the main thread. Defaults to null.
+         */
+        @JvmStatic
+        var sink: InsetterMetrics? = null
+    }
+}
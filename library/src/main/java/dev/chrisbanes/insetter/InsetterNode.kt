@@ -0,0 +1,214 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.view.View
+import android.view.ViewGroup.MarginLayoutParams
+import androidx.core.view.OnApplyWindowInsetsListener
+import androidx.core.view.ViewCompat
+import androidx.core.view.WindowInsetsCompat
+
+/**
+ * Holds all of the per-view state for an [Insetter]. A single instance is stored in the view's
+ * tags, and retrieved via [InsetterNode.of].
+ *
+ * The view's initial padding and margins are packed into primitives (see [PackedInsets]),
+ * rather than being stored as [ViewState] objects. A [ViewState] is only created on demand,
+ * via [viewState].
+ */
+internal class InsetterNode private constructor() {
+    /** The view's initial padding */
+    var initialPadding: PackedInsets = PackedInsets.NONE
+        private set
+
+    /** The view's initial margins */
+    var initialMargins: PackedInsets = PackedInsets.NONE
+        private set
+
+    /**
+     * Whether the [initialPadding] and [initialMargins] have been captured from the view. A
+     * node which is only used by [observers] does not capture them.
+     */
+    var hasInitialState: Boolean = false
+        private set
+
+    /** The [Insetter] which is currently applied to the view */
+    var insetter: Insetter? = null
+
+    /** The listener of the current [insetter] */
+    var listener: OnApplyWindowInsetsListener? = null
+
+    /**
+     * Whether the [listener] is set as the view's own window insets listener. It is not when
+     * the view is the root of an [InsetterHost], since the host uses that listener slot.
+     */
+    var listenerSetOnView: Boolean = false
+
+    /** The attach state listener which is currently added to the view */
+    var attachListener: View.OnAttachStateChangeListener? = null
+
+    /** The animator which is currently handling window insets animations for the view */
+    var animator: InsetsAnimationTarget? = null
+
+    /** Whether the [animator] is set as the view's own animation callback */
+    var animatorSetOnView: Boolean = false
+
+    /** The host which the view is currently registered with */
+    var registeredHost: InsetterHost? = null
+
+    /** The types which the current [insetter] is interested in */
+    var observedTypes: Int = 0
+
+    /** The types which are currently deferred, due to a running animation */
+    var deferredTypes: Int = 0
+
+    /** The most recent insets which were dispatched to the view */
+    var lastInsets: WindowInsetsCompat? = null
+
+    /** The values which were last applied, used to skip unchanged dispatches */
+    var fingerprint: InsetsFingerprint? = null
+
+    /** The insets which were last passed to a custom listener */
+    var previousListenerInsets: WindowInsetsCompat? = null
+
+    /**
+     * The listeners added via [addWindowInsetsObserver]. These are kept when the [insetter]
+     * is replaced or removed.
+     */
+    var observers: ArrayList<OnApplyWindowInsetsListener>? = null
+
+    /** The combined types which the [observers] are interested in */
+    var observerTypes: Int = 0
+
+    private var cachedViewState: ViewState? = null
+
+    /**
+     * A [ViewState] representation of the initial padding and margins. This is created on
+     * first access, and then cached.
+     */
+    val viewState: ViewState
+        get() = cachedViewState ?: ViewState(
+            paddings = initialPadding.toViewDimensions(),
+            margins = initialMargins.toViewDimensions(),
+        ).also { cachedViewState = it }
+
+    /**
+     * Resets any state which is specific to the previously applied [Insetter].
+     */
+    fun reset() {
+        deferredTypes = 0
+        lastInsets = null
+        fingerprint = null
+        previousListenerInsets = null
+    }
+
+    /**
+     * Notifies any [observers] of the [insets] dispatched to the [view].
+     */
+    fun notifyObservers(view: View, insets: WindowInsetsCompat) {
+        val observers = observers ?: return
+        for (i in observers.indices) {
+            observers[i].onApplyWindowInsets(view, insets)
+        }
+    }
+
+    /**
+     * Removes everything which the current [insetter] has registered on the [view]: the
+     * window insets listener, the animation callback, the attach state listener, any
+     * host registration, and any pending [InsetterSpec]. The view's padding and margins are
+     * left as-is.
+     */
+    fun release(view: View) {
+        if (listenerSetOnView) {
+            ViewCompat.setOnApplyWindowInsetsListener(view, null)
+            listenerSetOnView = false
+        }
+        listener = null
+        if (animatorSetOnView) {
+            ViewCompat.setWindowInsetsAnimationCallback(view, null)
+            animatorSetOnView = false
+        }
+        animator = null
+        attachListener?.let(view::removeOnAttachStateChangeListener)
+        attachListener = null
+        registeredHost?.unregister(view)
+        registeredHost = null
+        insetter = null
+        // Clear any spec which is waiting for the view to be attached, so that it does not
+        // replace whatever is being applied now
+        view.setTag(R.id.insetter_pending_spec, null)
+    }
+
+    /**
+     * Registers the [view] with the given [host], which then dispatches insets and animations
+     * to the current [listener] and [animator] directly. Any animation callback which was set
+     * on the view itself is removed, and any registration with a different host is replaced.
+     */
+    fun registerWith(view: View, host: InsetterHost) {
+        val listener = listener ?: return
+        if (animatorSetOnView) {
+            ViewCompat.setWindowInsetsAnimationCallback(view, null)
+            animatorSetOnView = false
+        }
+        if (registeredHost !== host) {
+            registeredHost?.unregister(view)
+        }
+        host.register(view, observedTypes, listener, animator)
+        registeredHost = host
+    }
+
+    private fun captureInitialState(view: View) {
+        initialPadding = PackedInsets.of(
+            left = view.paddingLeft,
+            top = view.paddingTop,
+            right = view.paddingRight,
+            bottom = view.paddingBottom,
+        )
+        initialMargins = when (val lp = view.layoutParams) {
+            is MarginLayoutParams -> PackedInsets.of(
+                left = lp.leftMargin,
+                top = lp.topMargin,
+                right = lp.rightMargin,
+                bottom = lp.bottomMargin,
+            )
+            else -> PackedInsets.NONE
+        }
+        hasInitialState = true
+        cachedViewState = null
+    }
+
+    companion object {
+        /**
+         * Returns the [InsetterNode] for the given [view], creating one if necessary. If
+         * [captureInitialState] is true and the node has not captured the view's initial state
+         * yet, the view's current padding and margins are stored as the initial state.
+         */
+        fun of(view: View, captureInitialState: Boolean = true): InsetterNode {
+            val node = view.getTag(R.id.insetter_node) as? InsetterNode
+                ?: InsetterNode().also { view.setTag(R.id.insetter_node, it) }
+            if (captureInitialState && !node.hasInitialState) {
+                node.captureInitialState(view)
+            }
+            return node
+        }
+
+        /**
+         * Returns the [InsetterNode] for the given [view], or null if it does not have one.
+         */
+        fun peek(view: View): InsetterNode? = view.getTag(R.id.insetter_node) as? InsetterNode
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.os.Looper
+import android.view.View
+import androidx.core.view.ViewCompat
+
+/**
+ * An immutable description of how window insets should be applied, which can be built once
+ * and then applied to any number of views.
+ *
+ * All of the state for each view is stored in the view itself, so applying a spec to a view
+ * does not create a new [Insetter]. This is useful for views which are created many times,
+ * such as items in a list:
+ *
+ * ```
+ * val itemInsetterSpec = insetterSpec {
+ *     type(navigationBars = true) {
+ *         padding(horizontal = true)
+ *     }
+ * }
+ *
+ * // Then when creating each item view
+ * itemView.applyInsetter(itemInsetterSpec)
+ * ```
+ *
+ * Instances can be created via [Insetter.Builder.buildSpec] or [insetterSpec].
+ */
+class InsetterSpec internal constructor(
+    private val insetter: Insetter,
+) {
+    /**
+     * Applies this spec to the given [view], replacing any [Insetter] which was previously
+     * applied to it.
+     *
+     * @return the [Insetter] which is shared by all views using this spec.
+     * @see Insetter.applyToView
+     */
+    fun applyToView(view: View): Insetter {
+        insetter.applyToView(view)
+        return insetter
+    }
+
+    /**
+     * Applies the current window insets to the given [view], which has previously had
+     * this spec applied via [applyToView]. The insets are the root insets of the window which
+     * [attachedView] is currently attached to.
+     *
+     * @see Insetter.applyCachedInsets
+     */
+    fun applyCachedInsets(view: View, attachedView: View): Boolean {
+        return insetter.applyCachedInsets(view, attachedView)
+    }
+
+    /**
+     * Registers this spec to be applied to the given [view] when it is first attached to a
+     * window. Unlike [applyToView], this can be called from any thread, which makes it
+     * suitable for views which are inflated in the background, such as via
+     * `AsyncLayoutInflater`.
+     *
+     * The view's current padding and margins are captured as its initial state now, so this
+     * should be called once the view's layout params have been set. The view must not be
+     * attached to a window when this is called from a background thread.
+     */
+    fun applyOnAttach(view: View) {
+        // Capture the initial state now, rather than when the view is attached
+        InsetterNode.of(view)
+        deferUntilAttached(view)
+    }
+
+    /**
+     * Applies this spec to the given [view] when it is next attached to a window. This can be
+     * called from any thread. The view's initial state is captured when it is attached, which
+     * is useful when the view's layout params have not been set yet, such as during inflation.
+     */
+    internal fun deferUntilAttached(view: View) {
+        if (ViewCompat.isAttachedToWindow(view)) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                applyToView(view)
+            } else {
+                view.post { applyToView(view) }
+            }
+            return
+        }
+        // If there's already a pending spec, the listener has already been added
+        val hasPending = view.getTag(R.id.insetter_pending_spec) != null
+        view.setTag(R.id.insetter_pending_spec, this)
+        if (!hasPending) {
+            view.addOnAttachStateChangeListener(PendingSpecAttachListener)
+        }
+    }
+
+    /**
+     * Returns true if this spec is currently applied to the given [view], via [applyToView].
+     * This is false once the spec has been removed from the view, or replaced by a different
+     * [Insetter] or spec.
+     */
+    fun isAppliedTo(view: View): Boolean = InsetterNode.peek(view)?.insetter === insetter
+
+    /**
+     * Removes this spec from the given [view], if it is currently applied.
+     *
+     * @see Insetter.removeFromView
+     */
+    fun removeFromView(view: View) {
+        insetter.removeFromView(view)
+    }
+}
+
+/**
+ * A stateless listener, shared between all views, which applies any pending [InsetterSpec]
+ * when the view is attached. Attach events are always dispatched on the main thread.
+ */
+private object PendingSpecAttachListener : View.OnAttachStateChangeListener {
+    override fun onViewAttachedToWindow(v: View) {
+        v.removeOnAttachStateChangeListener(this)
+        val spec = v.getTag(R.id.insetter_pending_spec) as? InsetterSpec ?: return
+        v.setTag(R.id.insetter_pending_spec, null)
+        spec.applyToView(v)
+    }
+
+    override fun onViewDetachedFromWindow(v: View) = Unit
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.os.Build
+import android.view.View
+import android.view.ViewParent
+
+/**
+ * Collects the views whose margins have changed during a single dispatch, so that a single
+ * layout request can be made for each affected parent, rather than one (or two) for each view.
+ *
+ * A batch is only active between [begin] and [commit], which are called on the main thread.
+ * Dispatches can be nested, such as a nested [InsetterHost] dispatching from within its outer
+ * host's dispatch, so the previously active batch is restored by [commit].
+ */
+internal class LayoutRequestBatch {
+    private val parents = ArrayList<ViewParent>()
+    private var changedViewCount = 0
+
+    /** The batch which was active when this batch was begun */
+    private var previous: LayoutRequestBatch? = null
+
+    /** The number of [begin] calls which have not been committed yet */
+    private var depth = 0
+
+    /**
+     * Called when the margins of the given [view] have been changed in place. The view is
+     * marked as needing a layout, and its parent is queued for a layout request.
+     */
+    fun onMarginsChanged(view: View) {
+        // forceLayout() ensures that the view is re-measured, without walking up the hierarchy
+        view.forceLayout()
+        changedViewCount++
+
+        val parent = view.parent ?: return
+        if (!parents.contains(parent)) {
+            parents += parent
+        }
+    }
+
+    /**
+     * Starts collecting changes. Any changes made until [commit] is called are batched.
+     */
+    fun begin() {
+        // If this batch is already active, this is a re-entrant dispatch, and the changes are
+        // committed by the outermost commit()
+        if (depth++ == 0) {
+            previous = current
+            current = this
+        }
+    }
+
+    /**
+     * Stops collecting changes, and requests a layout from each affected parent. The batch
+     * which was active before [begin] was called becomes active again.
+     *
+     * @return the number of layout requests which were avoided, compared to requesting a
+     * layout for each changed view.
+     */
+    fun commit(): Int {
+        if (--depth > 0) return 0
+        current = previous
+        previous = null
+
+        val metrics = InsetterMetrics.sink
+        // We use an indexed loop, to avoid allocating an iterator on each dispatch
+        for (i in 0 until parents.size) {
+            val parent = parents[i]
+            parent.requestLayout()
+            if (metrics != null && parent is View) metrics.onLayoutRequested(parent)
+        }
+
+        // Without batching, each view would set its layout params (which requests a layout),
+        // and on API < 26 would also request a layout from its parent
+        val unbatchedCount = when {
+            Build.VERSION.SDK_INT < 26 -> changedViewCount * 2
+            else -> changedViewCount
+        }
+        val avoided = (unbatchedCount - parents.size).coerceAtLeast(0)
+
+        parents.clear()
+        changedViewCount = 0
+        return avoided
+    }
+
+    companion object {
+        /**
+         * The batch which is currently collecting changes, or null if there is none.
+         */
+        var current: LayoutRequestBatch? = null
+            private set
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import androidx.core.graphics.Insets
+import androidx.core.view.WindowInsetsCompat
+
+/**
+ * Internal value class which represents a pixel length on each side, similar to [Insets].
+ *
+ * The values are packed into a single [Long], using a signed 16 bits per side, so that
+ * instances can be created and combined without allocating. Each value is therefore clamped
+ * to the range of a [Short], which comfortably covers insets, padding and margins. Clamping
+ * ensures that an out-of-range value can never change the value of another side.
+ *
+ * Conversions to and from [Insets] are provided via [toInsets] and [Insets.toPackedInsets],
+ * and should only be used at the edges where we interact with other APIs.
+ */
+internal inline class PackedInsets(val packed: Long) {
+    val left: Int
+        get() = packed.toShort().toInt()
+
+    val top: Int
+        get() = (packed shr 16).toShort().toInt()
+
+    val right: Int
+        get() = (packed shr 32).toShort().toInt()
+
+    val bottom: Int
+        get() = (packed shr 48).toShort().toInt()
+
+    val isEmpty: Boolean
+        get() = packed == 0L
+
+    operator fun plus(other: PackedInsets): PackedInsets = of(
+        left = left + other.left,
+        top = top + other.top,
+        right = right + other.right,
+        bottom = bottom + other.bottom,
+    )
+
+    operator fun minus(other: PackedInsets): PackedInsets = of(
+        left = left - other.left,
+        top = top - other.top,
+        right = right - other.right,
+        bottom = bottom - other.bottom,
+    )
+
+    /**
+     * Returns the maximum value of each side of this instance and [other].
+     */
+    fun max(other: PackedInsets): PackedInsets = of(
+        left = maxOf(left, other.left),
+        top = maxOf(top, other.top),
+        right = maxOf(right, other.right),
+        bottom = maxOf(bottom, other.bottom),
+    )
+
+    fun toInsets(): Insets = when (packed) {
+        0L -> Insets.NONE
+        else -> Insets.of(left, top, right, bottom)
+    }
+
+    fun toViewDimensions(): ViewDimensions = when (packed) {
+        0L -> ViewDimensions.EMPTY
+        else -> ViewDimensions(left, top, right, bottom)
+    }
+
+    companion object {
+        val NONE = PackedInsets(0L)
+
+        fun of(left: Int, top: Int, right: Int, bottom: Int): PackedInsets = PackedInsets(
+            pack(left) or
+                (pack(top) shl 16) or
+                (pack(right) shl 32) or
+                (pack(bottom) shl 48)
+        )
+    }
+}
+
+private const val SIDE_MASK = 0xFFFFL
+
+/**
+ * Packs the given [value] into 16 bits, clamping it to the range of a [Short] so that it does
+ * not overflow into the neighbouring side.
+ */
+private fun pack(value: Int): Long {
+    val clamped = value.coerceIn(Short.MIN_VALUE.toInt(), Short.MAX_VALUE.toInt())
+    return clamped.toLong() and SIDE_MASK
+}
+
+internal fun Insets.toPackedInsets(): PackedInsets = PackedInsets.of(left, top, right, bottom)
+
+internal fun ViewDimensions.toPackedInsets(): PackedInsets {
+    return PackedInsets.of(left, top, right, bottom)
+}
+
+/**
+ * Returns the insets for the given [types] as [PackedInsets]. If [types] is empty,
+ * [PackedInsets.NONE] is returned without querying the insets.
+ */
+internal fun WindowInsetsCompat.getPackedInsets(types: Int): PackedInsets = when (types) {
+    0 -> PackedInsets.NONE
+    else -> getInsets(types).toPackedInsets()
+}
+
+/**
+ * Returns the inset values of each side, for only the types which are applied on that side
+ * in [types]. Each distinct set of types is only queried once, since the sides usually share
+ * the same types.
+ */
+internal fun WindowInsetsCompat.getPackedInsets(types: SideApply): PackedInsets {
+    if (types.isEmpty) return PackedInsets.NONE
+
+    val left = getPackedInsets(types.left)
+    val top = when (types.top) {
+        types.left -> left
+        else -> getPackedInsets(types.top)
+    }
+    val right = when (types.right) {
+        types.left -> left
+        types.top -> top
+        else -> getPackedInsets(types.right)
+    }
+    val bottom = when (types.bottom) {
+        types.left -> left
+        types.top -> top
+        types.right -> right
+        else -> getPackedInsets(types.bottom)
+    }
+    return PackedInsets.of(left.left, top.top, right.right, bottom.bottom)
+}
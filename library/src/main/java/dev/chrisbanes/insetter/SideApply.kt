@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import androidx.annotation.RestrictTo
+
+/**
+ * Internal value class used to store which types to apply on each side using a given
+ * application type (padding, margin, etc).
+ *
+ * The [WindowInsetsCompat.Type][androidx.core.view.WindowInsetsCompat.Type] masks for each
+ * side are packed into a single [Long], using 16 bits per side. Since instances are immutable
+ * and inlined, combining them does not allocate.
+ */
+internal inline class SideApply(val packed: Long) {
+    val left: Int
+        get() = unpack(packed, LEFT_SHIFT)
+
+    val top: Int
+        get() = unpack(packed, TOP_SHIFT)
+
+    val right: Int
+        get() = unpack(packed, RIGHT_SHIFT)
+
+    val bottom: Int
+        get() = unpack(packed, BOTTOM_SHIFT)
+
+    val isEmpty: Boolean
+        get() = packed == 0L
+
+    val all: Int
+        get() = left or top or right or bottom
+
+    /**
+     * Returns a copy of this instance, with the given [insetTypes] added to the given [sides].
+     */
+    fun plus(insetTypes: Int, @Sides sides: Int = Side.ALL): SideApply {
+        var result = packed
+        if (sides and Side.LEFT != 0) result = result or pack(insetTypes, LEFT_SHIFT)
+        if (sides and Side.TOP != 0) result = result or pack(insetTypes, TOP_SHIFT)
+        if (sides and Side.RIGHT != 0) result = result or pack(insetTypes, RIGHT_SHIFT)
+        if (sides and Side.BOTTOM != 0) result = result or pack(insetTypes, BOTTOM_SHIFT)
+        return SideApply(result)
+    }
+
+    operator fun plus(other: SideApply): SideApply = SideApply(packed or other.packed)
+
+    operator fun minus(other: SideApply): SideApply = SideApply(packed and other.packed.inv())
+
+    operator fun minus(type: Int): SideApply = SideApply(packed and allSides(type).inv())
+
+    /**
+     * Returns a copy of this instance which only contains the sides which apply any of the
+     * given [types]. The sides which are kept retain all of their types.
+     */
+    fun sidesWith(types: Int): SideApply {
+        var result = 0L
+        if (left and types != 0) result = result or pack(left, LEFT_SHIFT)
+        if (top and types != 0) result = result or pack(top, TOP_SHIFT)
+        if (right and types != 0) result = result or pack(right, RIGHT_SHIFT)
+        if (bottom and types != 0) result = result or pack(bottom, BOTTOM_SHIFT)
+        return SideApply(result)
+    }
+
+    companion object {
+        /**
+         * An instance with no types on any side.
+         */
+        val NONE = SideApply(0L)
+    }
+}
+
+/**
+ * Provides the other Insetter libraries with access to [SideApply] values, which they store as
+ * the packed [Long]. This is not part of the public API.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+object SideApplyRules {
+    /**
+     * Returns the packed [SideApply] which applies the given [insetTypes] to the given [sides].
+     */
+    @JvmStatic
+    fun of(insetTypes: Int, @Sides sides: Int): Long {
+        return SideApply.NONE.plus(insetTypes, sides).packed
+    }
+
+    /**
+     * Applies the packed [SideApply] [rule] as padding, via the given [builder].
+     */
+    @JvmStatic
+    fun padding(builder: Insetter.Builder, rule: Long): Insetter.Builder {
+        return builder.padding(SideApply(rule))
+    }
+
+    /**
+     * Applies the packed [SideApply] [rule] as margin, via the given [builder].
+     */
+    @JvmStatic
+    fun margin(builder: Insetter.Builder, rule: Long): Insetter.Builder {
+        return builder.margin(SideApply(rule))
+    }
+}
+
+private const val LEFT_SHIFT = 0
+private const val TOP_SHIFT = 16
+private const val RIGHT_SHIFT = 32
+private const val BOTTOM_SHIFT = 48
+
+private const val SIDE_MASK = 0xFFFFL
+
+private fun pack(types: Int, shift: Int): Long = (types.toLong() and SIDE_MASK) shl shift
+
+private fun unpack(packed: Long, shift: Int): Int = ((packed ushr shift) and SIDE_MASK).toInt()
+
+private fun allSides(types: Int): Long {
+    return pack(types, LEFT_SHIFT) or
+        pack(types, TOP_SHIFT) or
+        pack(types, RIGHT_SHIFT) or
+        pack(types, BOTTOM_SHIFT)
+}
@@ -42,3 +42,17 @@ fun windowInsetTypesOf(
     if (mandatorySystemGestures) flag = flag or WindowInsetsCompat.Type.mandatorySystemGestures()
     return flag
 }
+
+/**
+ * All of the [WindowInsetsCompat.Type]s which can be set via [windowInsetTypesOf].
+ */
+internal val ALL_INSET_TYPES = windowInsetTypesOf(
+    ime = true,
+    navigationBars = true,
+    statusBars = true,
+    systemGestures = true,
+    mandatorySystemGestures = true,
+    displayCutout = true,
+    captionBar = true,
+    tappableElement = true,
+)
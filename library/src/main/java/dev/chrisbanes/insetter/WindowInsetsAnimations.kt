@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import androidx.core.view.WindowInsetsAnimationCompat
+import androidx.core.view.WindowInsetsCompat
+
+/*
+ * The functions in this file are called on every frame of a window insets animation, so they
+ * need to avoid allocating. Keep them to primitive arithmetic and indexed loops.
+ */
+
+/**
+ * Returns the combined [WindowInsetsAnimationCompat.getTypeMask] of all of the given
+ * [animations].
+ */
+internal fun runningTypesOf(animations: List<WindowInsetsAnimationCompat>): Int {
+    var types = 0
+    // We use an indexed loop to avoid allocating an iterator
+    for (i in 0 until animations.size) {
+        types = types or animations[i].typeMask
+    }
+    return types
+}
+
+/**
+ * Calculates the amount of each side to translate by, from the [animated] and [persistent]
+ * inset values.
+ *
+ * The persistent insets have already been applied during layout, so we only translate by the
+ * difference between the two. The difference on each side is coerced to be >= 0, to ensure
+ * that we don't use negative insets.
+ */
+internal fun animatedDelta(animated: PackedInsets, persistent: PackedInsets): PackedInsets {
+    return (animated - persistent).max(PackedInsets.NONE)
+}
+
+/**
+ * Calculates and stores the translation for a pair of animated and persistent type masks.
+ *
+ * The result for the most recent insets and type masks is kept, so that views which animate
+ * the same types can share the calculation within a single frame.
+ *
+ * [update] does not allocate for the same values. For new values, the only allocations are
+ * the two [WindowInsetsCompat.getInsets] queries, which allocate an
+ * [androidx.core.graphics.Insets] each below API 30. The translation itself is calculated
+ * without allocating, which `AnimatedTranslationTest` asserts exactly.
+ */
+internal class AnimatedTranslation {
+    private var insets: WindowInsetsCompat? = null
+    private var animatedTypes = 0
+    private var persistentTypes = 0
+
+    var x: Float = 0f
+        private set
+
+    var y: Float = 0f
+        private set
+
+    /**
+     * Updates [x] and [y] for the given [insets], unless they have already been calculated
+     * for the same values.
+     */
+    fun update(insets: WindowInsetsCompat, animatedTypes: Int, persistentTypes: Int) {
+        if (insets === this.insets &&
+            animatedTypes == this.animatedTypes &&
+            persistentTypes == this.persistentTypes
+        ) {
+            // We've already calculated the translation for these values
+            return
+        }
+
+        val delta = animatedDelta(
+            // The insets which are potentially deferred
+            animated = insets.getPackedInsets(animatedTypes),
+            // The persistent inset types which are applied during layout
+            persistent = insets.getPackedInsets(persistentTypes),
+        )
+        x = (delta.left - delta.right).toFloat()
+        y = (delta.top - delta.bottom).toFloat()
+
+        this.insets = insets
+        this.animatedTypes = animatedTypes
+        this.persistentTypes = persistentTypes
+    }
+
+    /**
+     * Clears the stored values, releasing the reference to the last insets.
+     */
+    fun reset() {
+        insets = null
+        x = 0f
+        y = 0f
+    }
+}
+
+/**
+ * A target for window insets animation events, which allows a single
+ * [WindowInsetsAnimationCompat.Callback] to drive the animations of many views.
+ */
+internal interface InsetsAnimationTarget {
+    /**
+     * Called when an animation with the given [typeMask] is about to start.
+     */
+    fun onAnimationPrepare(typeMask: Int)
+
+    /**
+     * Called on each frame of the running animations, with the combined [runningTypes] of all
+     * of the running animations. The [translation] may be shared with other targets.
+     */
+    fun onAnimationProgress(
+        insets: WindowInsetsCompat,
+        runningTypes: Int,
+        translation: AnimatedTranslation,
+    )
+
+    /**
+     * Called when an animation with the given [typeMask] has ended.
+     */
+    fun onAnimationEnd(typeMask: Int)
+}
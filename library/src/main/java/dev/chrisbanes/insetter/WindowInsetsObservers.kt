@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.view.View
+import androidx.annotation.RestrictTo
+import androidx.core.view.OnApplyWindowInsetsListener
+import androidx.core.view.WindowInsetsCompat
+
+/**
+ * The [Insetter] which is applied to views which have observers, but no other [Insetter].
+ * It does not apply anything itself, so it is only interested in the observers' types. The
+ * view handles the insets itself, as it would without a window insets listener.
+ */
+internal val observerInsetter: Insetter = Insetter.builder().build()
+
+/**
+ * Adds a [listener] which is notified of the window insets dispatched to this view, without
+ * replacing the [Insetter] which is applied to the view, either before or after this call.
+ * This allows other components to read a view's insets, while your own [Insetter] is applied
+ * to the view. The value returned by the [listener] is ignored.
+ *
+ * If no [Insetter] is currently applied to the view, one which does not modify the view is
+ * applied, so that the [listener] receives insets when the view is attached, and from any
+ * [InsetterHost] which the view is within. The view's initial state is not captured for it.
+ *
+ * @param types Bit mask of [WindowInsetsCompat.Type]s which the [listener] is interested in.
+ * An [InsetterHost] does not dispatch to the view when only other types have changed.
+ * @param listener The listener to notify.
+ * @see removeWindowInsetsObserver
+ */
+internal fun View.addWindowInsetsObserver(types: Int, listener: OnApplyWindowInsetsListener) {
+    val node = InsetterNode.of(this, captureInitialState = false)
+    val observers = node.observers ?: ArrayList<OnApplyWindowInsetsListener>(1)
+        .also { node.observers = it }
+    observers += listener
+    node.observerTypes = node.observerTypes or types
+
+    if (node.insetter == null) {
+        observerInsetter.applyToView(this)
+        return
+    }
+
+    node.observedTypes = node.observedTypes or types
+    val host = node.registeredHost
+    if (host != null) {
+        // Register again so that the host knows about the new types. This also dispatches
+        // the host's current insets, including to the new listener
+        node.registerWith(this, host)
+    } else {
+        node.lastInsets?.let { listener.onApplyWindowInsets(this, it) }
+    }
+}
+
+/**
+ * Removes a [listener] which was previously added via [addWindowInsetsObserver].
+ */
+internal fun View.removeWindowInsetsObserver(listener: OnApplyWindowInsetsListener) {
+    val node = InsetterNode.peek(this) ?: return
+    val observers = node.observers ?: return
+    if (!observers.remove(listener) || observers.isNotEmpty()) return
+
+    node.observers = null
+    node.observerTypes = 0
+    // Remove the Insetter which we applied for the observers, if it is still there
+    observerInsetter.removeFromView(this)
+}
+
+/**
+ * Provides the other Insetter libraries with access to the window insets observers of a view.
+ * This is not part of the public API.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+object WindowInsetsObservers {
+    /**
+     * @see addWindowInsetsObserver
+     */
+    @JvmStatic
+    fun add(view: View, types: Int, listener: OnApplyWindowInsetsListener) {
+        view.addWindowInsetsObserver(types, listener)
+    }
+
+    /**
+     * @see removeWindowInsetsObserver
+     */
+    @JvmStatic
+    fun remove(view: View, listener: OnApplyWindowInsetsListener) {
+        view.removeWindowInsetsObserver(listener)
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import com.sun.management.ThreadMXBean
+import java.lang.management.ManagementFactory
+
+/**
+ * Counts the bytes which are allocated on the thread which created it, via the JVM's
+ * [ThreadMXBean].
+ *
+ * Reading the counter allocates on some JVM versions, so each measurement is corrected by the
+ * bytes which an empty measurement allocates. This allows tests to assert an exact count.
+ */
+internal class AllocationCounter private constructor(
+    private val threadMxBean: ThreadMXBean,
+) {
+    private val threadId = Thread.currentThread().id
+
+    /** The bytes which are allocated by a measurement of nothing */
+    private val overhead: Long
+
+    init {
+        var min = Long.MAX_VALUE
+        repeat(10) {
+            val start = read()
+            min = minOf(min, read() - start)
+        }
+        overhead = min
+    }
+
+    /**
+     * Starts a measurement, returning the value to pass to [bytesSince].
+     */
+    fun start(): Long = read()
+
+    /**
+     * Returns the number of bytes which have been allocated since the call to [start] which returned [start].
+     */
+    fun bytesSince(start: Long): Long = read() - start - overhead
+
+    private fun read(): Long = threadMxBean.getThreadAllocatedBytes(threadId)
+
+    companion object {
+        /**
+         * Returns a counter for the current thread, or null if the JVM does not support
+         * counting allocations.
+         */
+        fun forCurrentThreadOrNull(): AllocationCounter? {
+            val threadMxBean = ManagementFactory.getThreadMXBean() as? ThreadMXBean
+            if (threadMxBean == null || !threadMxBean.isThreadAllocatedMemorySupported) {
+                return null
+            }
+            threadMxBean.isThreadAllocatedMemoryEnabled = true
+            return AllocationCounter(threadMxBean)
+        }
+    }
+}
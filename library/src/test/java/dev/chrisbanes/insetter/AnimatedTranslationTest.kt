@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import androidx.core.graphics.Insets
+import androidx.core.view.WindowInsetsCompat
+import org.junit.Assert.assertEquals
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Tests [AnimatedTranslation.update], which is called on every frame of a window insets
+ * animation, for every animating view.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [28])
+class AnimatedTranslationTest {
+    private val statusBars = WindowInsetsCompat.Type.statusBars()
+    private val navigationBars = WindowInsetsCompat.Type.navigationBars()
+
+    /**
+     * The insets for each frame of the navigation bar animating in, with the status bar
+     * already applied as padding. They are built up front so that building them is not
+     * included in any measurements.
+     */
+    private val frames = Array(FRAME_COUNT) { frame ->
+        WindowInsetsCompat.Builder()
+            .setInsets(statusBars, Insets.of(0, 24, 0, 0))
+            .setInsets(navigationBars, Insets.of(0, 0, 0, frame))
+            .build()
+    }
+
+    /** Stores the results of queries, so that they can not be optimized away */
+    private var queried: Insets? = null
+
+    @Test
+    fun update_translatesByAnimatedDelta() {
+        val translation = AnimatedTranslation()
+        translation.update(frames[30], animatedTypes = navigationBars, persistentTypes = statusBars)
+
+        assertEquals(0f, translation.x, 0f)
+        assertEquals(-30f, translation.y, 0f)
+    }
+
+    @Test
+    fun update_sameFrame_doesNotAllocate() {
+        val counter = AllocationCounter.forCurrentThreadOrNull()
+        assumeTrue(counter != null)
+
+        // When views animate the same types, the translation is calculated for the first view
+        // in each frame, and then re-used for the other views
+        val translation = AnimatedTranslation()
+        val insets = frames[30]
+        repeat(REPEAT_COUNT) { translation.update(insets, navigationBars, statusBars) }
+
+        val start = counter!!.start()
+        repeat(REPEAT_COUNT) { translation.update(insets, navigationBars, statusBars) }
+        val allocated = counter.bytesSince(start)
+
+        assertEquals("$allocated bytes were allocated (y=${translation.y})", 0L, allocated)
+    }
+
+    @Test
+    fun update_allocatesOnlyInsetsQueries() {
+        val counter = AllocationCounter.forCurrentThreadOrNull()
+        assumeTrue(counter != null)
+
+        val translation = AnimatedTranslation()
+
+        // Warm up both, so that we're measuring the steady-state
+        runFrames(translation)
+        queryFrames()
+
+        var start = counter!!.start()
+        runFrames(translation)
+        val updateAllocated = counter.bytesSince(start)
+
+        start = counter.start()
+        queryFrames()
+        val queriesAllocated = counter.bytesSince(start)
+
+        // On each new frame, the translation needs to query the insets for the animated and
+        // persistent types. Below API 30, WindowInsetsCompat allocates an Insets for each
+        // query, which we can't avoid. Those queries are the only allocations: the
+        // translation itself is calculated without allocating.
+        assertEquals(
+            "AnimatedTranslation allocated $updateAllocated bytes, but the insets queries " +
+                "alone allocated $queriesAllocated bytes (y=${translation.y}, q=$queried)",
+            queriesAllocated,
+            updateAllocated
+        )
+    }
+
+    private fun runFrames(translation: AnimatedTranslation) {
+        repeat(PASS_COUNT) {
+            for (i in frames.indices) {
+                translation.update(frames[i], navigationBars, statusBars)
+            }
+        }
+    }
+
+    private fun queryFrames() {
+        repeat(PASS_COUNT) {
+            for (i in frames.indices) {
+                queried = frames[i].getInsets(navigationBars)
+                queried = frames[i].getInsets(statusBars)
+            }
+        }
+    }
+
+    private companion object {
+        const val FRAME_COUNT = 100
+        const val PASS_COUNT = 50
+        const val REPEAT_COUNT = 10_000
+    }
+}
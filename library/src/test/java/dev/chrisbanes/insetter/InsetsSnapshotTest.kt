@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.content.res.Configuration
+import androidx.core.graphics.Insets
+import androidx.core.view.WindowInsetsCompat
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [28])
+class InsetsSnapshotTest {
+    private val insets = WindowInsetsCompat.Builder()
+        .setInsets(WindowInsetsCompat.Type.statusBars(), Insets.of(0, 24, 0, 0))
+        .setInsets(WindowInsetsCompat.Type.navigationBars(), Insets.of(0, 0, 0, 48))
+        .build()
+
+    private val slot = InsetsSnapshot.slotOf(Configuration.ORIENTATION_PORTRAIT, 360)
+
+    @Test
+    fun emptySlot_returnsNull() {
+        assertNull(InsetsSnapshot().get(slot))
+    }
+
+    @Test
+    fun put_returnsWhetherChanged() {
+        val snapshot = InsetsSnapshot()
+        assertTrue(snapshot.put(slot, insets))
+        assertFalse(snapshot.put(slot, insets))
+    }
+
+    @Test
+    fun roundTrip() {
+        val snapshot = InsetsSnapshot()
+        snapshot.put(slot, insets)
+
+        val bytes = snapshot.toByteArray()
+        assertEquals(InsetsSnapshot.SIZE_BYTES, bytes.size)
+
+        val read = InsetsSnapshot()
+        assertTrue(read.readFrom(bytes))
+
+        val restored = read.get(slot)!!
+        assertEquals(
+            Insets.of(0, 24, 0, 0),
+            restored.getInsets(WindowInsetsCompat.Type.statusBars())
+        )
+        assertEquals(
+            Insets.of(0, 0, 0, 48),
+            restored.getInsets(WindowInsetsCompat.Type.navigationBars())
+        )
+    }
+
+    @Test
+    fun readFrom_invalidBytes() {
+        val snapshot = InsetsSnapshot()
+        assertFalse(snapshot.readFrom(ByteArray(4)))
+        assertFalse(snapshot.readFrom(ByteArray(InsetsSnapshot.SIZE_BYTES)))
+        assertNull(snapshot.get(slot))
+    }
+
+    @Test
+    fun slotOf_differsByOrientationAndWidth() {
+        val landscape = InsetsSnapshot.slotOf(Configuration.ORIENTATION_LANDSCAPE, 360)
+        val wide = InsetsSnapshot.slotOf(Configuration.ORIENTATION_PORTRAIT, 900)
+        assertNotEquals(slot, landscape)
+        assertNotEquals(slot, wide)
+        assertNotEquals(landscape, wide)
+    }
+}
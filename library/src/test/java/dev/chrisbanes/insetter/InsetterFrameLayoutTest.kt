@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.view.View
+import android.view.ViewGroup.LayoutParams.MATCH_PARENT
+import androidx.core.graphics.Insets
+import androidx.core.view.ViewCompat
+import androidx.core.view.WindowInsetsCompat
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+
+/**
+ * Tests [InsetterFrameLayout]. The layout is not attached to a window, so that the insets
+ * which we dispatch are not clipped to the window's insets.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [28])
+class InsetterFrameLayoutTest {
+    private val statusBars = WindowInsetsCompat.Type.statusBars()
+    private val navigationBars = WindowInsetsCompat.Type.navigationBars()
+
+    private lateinit var layout: InsetterFrameLayout
+    private lateinit var child: View
+    private lateinit var lp: InsetterFrameLayout.LayoutParams
+
+    @Before
+    fun setup() {
+        val context = RuntimeEnvironment.getApplication()
+        layout = InsetterFrameLayout(context)
+        child = View(context).apply { setPadding(1, 2, 3, 4) }
+        lp = InsetterFrameLayout.LayoutParams(MATCH_PARENT, MATCH_PARENT).apply {
+            setMargins(5, 6, 7, 8)
+        }
+        layout.addView(child, lp)
+    }
+
+    @Test
+    fun rulesApplied() {
+        lp.padding(statusBars, Side.TOP).margin(navigationBars, Side.BOTTOM)
+        layout.dispatchSystemBars(top = 24, bottom = 48)
+        layout.layoutNow()
+
+        assertPadding(1, 2 + 24, 3, 4)
+        assertMargins(5, 6, 7, 8 + 48)
+    }
+
+    @Test
+    fun sidesWithoutRules_keepCurrentValues() {
+        lp.padding(statusBars, Side.TOP).margin(navigationBars, Side.BOTTOM)
+        layout.dispatchSystemBars(top = 24, bottom = 48)
+        layout.layoutNow()
+
+        // Update the sides which do not have any rules
+        child.setPadding(10, child.paddingTop, 30, 40)
+        lp.leftMargin = 50
+        lp.topMargin = 60
+
+        layout.dispatchSystemBars(top = 32, bottom = 16)
+        layout.layoutNow()
+
+        assertPadding(10, 2 + 32, 30, 40)
+        assertMargins(50, 60, 7, 8 + 16)
+    }
+
+    @Test
+    fun rulesChanged_requestsLayout() {
+        layout.dispatchSystemBars(top = 24, bottom = 48)
+        lp.padding(statusBars, Side.TOP)
+        layout.layoutNow()
+
+        lp.margin(navigationBars, Side.BOTTOM)
+        assertTrue(layout.isLayoutRequested)
+
+        layout.layoutNow()
+        assertMargins(5, 6, 7, 8 + 48)
+    }
+
+    @Test
+    fun insetterAppliedToLayout_keepsChildRules() {
+        lp.padding(statusBars, Side.TOP)
+        Insetter.builder()
+            .paddingBottom(navigationBars)
+            .applyToView(layout)
+
+        layout.dispatchSystemBars(top = 24, bottom = 48)
+        layout.layoutNow()
+
+        assertEquals(48, layout.paddingBottom)
+        assertPadding(1, 2 + 24, 3, 4)
+    }
+
+    private fun assertPadding(left: Int, top: Int, right: Int, bottom: Int) {
+        assertEquals(
+            "padding",
+            listOf(left, top, right, bottom),
+            listOf(child.paddingLeft, child.paddingTop, child.paddingRight, child.paddingBottom)
+        )
+    }
+
+    private fun assertMargins(left: Int, top: Int, right: Int, bottom: Int) {
+        assertEquals(
+            "margins",
+            listOf(left, top, right, bottom),
+            listOf(lp.leftMargin, lp.topMargin, lp.rightMargin, lp.bottomMargin)
+        )
+    }
+}
+
+private fun View.dispatchSystemBars(top: Int, bottom: Int) {
+    val insets = WindowInsetsCompat.Builder()
+        .setInsets(WindowInsetsCompat.Type.statusBars(), Insets.of(0, top, 0, 0))
+        .setInsets(WindowInsetsCompat.Type.navigationBars(), Insets.of(0, 0, 0, bottom))
+        .build()
+    ViewCompat.dispatchApplyWindowInsets(this, insets)
+}
+
+private fun View.layoutNow() {
+    measure(
+        View.MeasureSpec.makeMeasureSpec(1000, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(2000, View.MeasureSpec.EXACTLY),
+    )
+    layout(0, 0, 1000, 2000)
+}
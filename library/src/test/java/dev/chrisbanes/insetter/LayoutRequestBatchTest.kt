@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [28])
+class LayoutRequestBatchTest {
+    @Test
+    fun nestedBatch_restoresOuterBatch() {
+        val outer = LayoutRequestBatch()
+        val inner = LayoutRequestBatch()
+
+        outer.begin()
+        inner.begin()
+        assertSame(inner, LayoutRequestBatch.current)
+
+        inner.commit()
+        assertSame(outer, LayoutRequestBatch.current)
+
+        outer.commit()
+        assertNull(LayoutRequestBatch.current)
+    }
+
+    @Test
+    fun reentrantBatch_staysActiveUntilOutermostCommit() {
+        val outer = LayoutRequestBatch()
+        val batch = LayoutRequestBatch()
+
+        outer.begin()
+        batch.begin()
+        batch.begin()
+
+        batch.commit()
+        assertSame(batch, LayoutRequestBatch.current)
+
+        batch.commit()
+        assertSame(outer, LayoutRequestBatch.current)
+
+        outer.commit()
+        assertNull(LayoutRequestBatch.current)
+    }
+}
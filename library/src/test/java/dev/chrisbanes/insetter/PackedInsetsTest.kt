@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class PackedInsetsTest {
+    @Test
+    fun sides() {
+        val insets = PackedInsets.of(1, 2, 3, 4)
+        assertEquals(1, insets.left)
+        assertEquals(2, insets.top)
+        assertEquals(3, insets.right)
+        assertEquals(4, insets.bottom)
+    }
+
+    @Test
+    fun negativeSides() {
+        val insets = PackedInsets.of(-1, 2, -32768, 32767)
+        assertEquals(-1, insets.left)
+        assertEquals(2, insets.top)
+        assertEquals(-32768, insets.right)
+        assertEquals(32767, insets.bottom)
+    }
+
+    @Test
+    fun outOfRangeSides_areClamped() {
+        val insets = PackedInsets.of(40000, 1, -40000, 2)
+        assertEquals(32767, insets.left)
+        assertEquals(1, insets.top)
+        assertEquals(-32768, insets.right)
+        assertEquals(2, insets.bottom)
+    }
+
+    @Test
+    fun plus_outOfRange_isClamped() {
+        val insets = PackedInsets.of(32000, 1, 0, 0) + PackedInsets.of(32000, 0, 0, 0)
+        assertEquals(32767, insets.left)
+        assertEquals(1, insets.top)
+    }
+
+    @Test
+    fun none() {
+        assertTrue(PackedInsets.NONE.isEmpty)
+        assertEquals(PackedInsets.NONE, PackedInsets.of(0, 0, 0, 0))
+    }
+
+    @Test
+    fun plus() {
+        assertEquals(
+            PackedInsets.of(11, -18, 33, 44),
+            PackedInsets.of(1, 2, 3, 4) + PackedInsets.of(10, -20, 30, 40)
+        )
+    }
+
+    @Test
+    fun minus() {
+        assertEquals(
+            PackedInsets.of(-9, 22, -27, 0),
+            PackedInsets.of(1, 2, 3, 4) - PackedInsets.of(10, -20, 30, 4)
+        )
+    }
+
+    @Test
+    fun max() {
+        assertEquals(
+            PackedInsets.of(10, 2, 3, 0),
+            PackedInsets.of(1, 2, 3, -4).max(PackedInsets.of(10, -20, 0, 0))
+        )
+    }
+}
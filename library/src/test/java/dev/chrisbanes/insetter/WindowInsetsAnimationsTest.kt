@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import androidx.core.view.WindowInsetsAnimationCompat
+import org.junit.Assert.assertEquals
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+
+class WindowInsetsAnimationsTest {
+    @Test
+    fun animatedDelta_differenceIsApplied() {
+        // IME animating in from the bottom, with the nav bar already applied as padding
+        // Left side is animating too, with some of it already applied
+        val delta = animatedDelta(
+            animated = PackedInsets.of(80, 0, 0, 300),
+            persistent = PackedInsets.of(30, 0, 0, 100),
+        )
+        assertEquals(PackedInsets.of(50, 0, 0, 200), delta)
+    }
+
+    @Test
+    fun animatedDelta_negativeDifferenceIsIgnored() {
+        // The animated insets are smaller than the persistent insets, so no translation
+        val delta = animatedDelta(
+            animated = PackedInsets.of(0, 0, 0, 20),
+            persistent = PackedInsets.of(0, 0, 0, 100),
+        )
+        assertEquals(PackedInsets.NONE, delta)
+    }
+
+    @Test
+    fun runningTypesOf_combinesMasks() {
+        val animations = listOf(
+            WindowInsetsAnimationCompat(1 shl 3, null, 0),
+            WindowInsetsAnimationCompat(1 shl 1, null, 0),
+        )
+        assertEquals((1 shl 3) or (1 shl 1), runningTypesOf(animations))
+    }
+
+    @Test
+    fun runningTypesOf_doesNotAllocate() {
+        val counter = AllocationCounter.forCurrentThreadOrNull()
+        assumeTrue(counter != null)
+
+        val animations = listOf(
+            WindowInsetsAnimationCompat(1 shl 3, null, 0),
+            WindowInsetsAnimationCompat(1 shl 1, null, 0),
+        )
+
+        // Warm up, so that we're measuring the steady-state
+        var result = 0
+        repeat(FRAMES) { result += runningTypesOf(animations) }
+
+        val start = counter!!.start()
+        repeat(FRAMES) { result += runningTypesOf(animations) }
+        val allocated = counter.bytesSince(start)
+
+        assertEquals(allocationMessage(allocated, result), 0L, allocated)
+    }
+
+    @Test
+    fun animatedDelta_doesNotAllocate() {
+        val counter = AllocationCounter.forCurrentThreadOrNull()
+        assumeTrue(counter != null)
+
+        val persistent = PackedInsets.of(0, 0, 0, 48)
+
+        // Warm up, so that we're measuring the steady-state
+        var result = 0
+        repeat(FRAMES) {
+            result += animatedDelta(PackedInsets.of(0, 0, 0, it % 300), persistent).bottom
+        }
+
+        val start = counter!!.start()
+        repeat(FRAMES) {
+            result += animatedDelta(PackedInsets.of(0, 0, 0, it % 300), persistent).bottom
+        }
+        val allocated = counter.bytesSince(start)
+
+        assertEquals(allocationMessage(allocated, result), 0L, allocated)
+    }
+
+    private fun allocationMessage(allocated: Long, result: Int): String {
+        // We include the result so that the measured calls can not be optimized away
+        return "$allocated bytes were allocated over $FRAMES frames (r=$result)"
+    }
+
+    private companion object {
+        const val FRAMES = 10_000
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.view.View
+import androidx.core.graphics.Insets
+import androidx.core.view.OnApplyWindowInsetsListener
+import androidx.core.view.ViewCompat
+import androidx.core.view.WindowInsetsCompat
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+
+/**
+ * Tests the window insets observers. The view is not attached to a window, so that the insets
+ * which we dispatch are not clipped to the window's insets.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [28])
+class WindowInsetsObserversTest {
+    private val statusBars = WindowInsetsCompat.Type.statusBars()
+
+    private lateinit var view: View
+    private var observedTop = -1
+
+    private val observer = OnApplyWindowInsetsListener { _, insets ->
+        observedTop = insets.getInsets(statusBars).top
+        insets
+    }
+
+    @Before
+    fun setup() {
+        view = View(RuntimeEnvironment.getApplication())
+    }
+
+    @Test
+    fun observerOnly_observesOnlyItsTypes() {
+        view.addWindowInsetsObserver(statusBars, observer)
+        assertEquals(statusBars, InsetterNode.peek(view)!!.observedTypes)
+    }
+
+    @Test
+    fun observerOnly_viewHandlesInsets() {
+        view.fitsSystemWindows = true
+        view.addWindowInsetsObserver(statusBars, observer)
+
+        view.dispatchStatusBars(top = 24)
+
+        assertEquals(24, observedTop)
+        // The view handles the insets itself, as it would without a listener
+        assertEquals(24, view.paddingTop)
+    }
+
+    @Test
+    fun observerAddedFirst_insetterCapturesInitialStateWhenApplied() {
+        view.addWindowInsetsObserver(statusBars, observer)
+        view.setPadding(0, 10, 0, 0)
+        Insetter.builder()
+            .paddingTop(statusBars)
+            .applyToView(view)
+
+        view.dispatchStatusBars(top = 24)
+
+        assertEquals(24, observedTop)
+        assertEquals(10 + 24, view.paddingTop)
+    }
+
+    @Test
+    fun removeObserver_stopsObserving() {
+        view.addWindowInsetsObserver(statusBars, observer)
+        view.removeWindowInsetsObserver(observer)
+
+        view.dispatchStatusBars(top = 24)
+
+        assertEquals(-1, observedTop)
+    }
+}
+
+private fun View.dispatchStatusBars(top: Int) {
+    val insets = WindowInsetsCompat.Builder()
+        .setInsets(WindowInsetsCompat.Type.statusBars(), Insets.of(0, top, 0, 0))
+        .build()
+    ViewCompat.dispatchApplyWindowInsets(this, insets)
+}
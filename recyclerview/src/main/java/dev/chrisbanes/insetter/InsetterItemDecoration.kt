@@ -0,0 +1,241 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.graphics.Rect
+import android.view.View
+import androidx.core.view.OnApplyWindowInsetsListener
+import androidx.core.view.WindowInsetsCompat
+import androidx.recyclerview.widget.RecyclerView
+
+/**
+ * A [RecyclerView.ItemDecoration] which applies window insets as offsets to the first and/or
+ * last items of a [RecyclerView].
+ *
+ * The insets are read once from the [RecyclerView], and the offsets for the edge items are
+ * calculated whenever the insets change. The items themselves do not need any window insets
+ * listeners, so binding and scrolling do not result in any window insets dispatches.
+ *
+ * ```
+ * InsetterItemDecoration()
+ *     // Offset the first item by the status bar height
+ *     .firstItem(WindowInsetsCompat.Type.statusBars(), Side.TOP)
+ *     // Offset the last item by the navigation bar height
+ *     .lastItem(WindowInsetsCompat.Type.navigationBars(), Side.BOTTOM)
+ *     .attachTo(recyclerView)
+ * ```
+ *
+ * The first and last items are those at the first and last adapter positions, regardless of
+ * how the layout manager positions them. When items are inserted, removed or moved at either
+ * end of the adapter, the offsets are moved to the new first or last item.
+ */
+class InsetterItemDecoration : RecyclerView.ItemDecoration() {
+    // The inset types to apply on each side (left, top, right, bottom)
+    private val firstItemTypes = IntArray(4)
+    private val lastItemTypes = IntArray(4)
+
+    private val firstItemOffsets = Rect()
+    private val lastItemOffsets = Rect()
+
+    private var recyclerView: RecyclerView? = null
+    private var observedAdapter: RecyclerView.Adapter<*>? = null
+
+    private val insetsObserver = OnApplyWindowInsetsListener { view, insets ->
+        onApplyInsets(view as RecyclerView, insets)
+        insets
+    }
+
+    private val adapterObserver = object : RecyclerView.AdapterDataObserver() {
+        override fun onItemRangeInserted(positionStart: Int, itemCount: Int) {
+            val count = observedAdapter?.itemCount ?: return
+            // An insert at the start replaces the first item, and an insert at the end
+            // replaces the last item
+            onEdgeItemsChanged(
+                firstChanged = positionStart == 0,
+                lastChanged = positionStart + itemCount >= count,
+            )
+        }
+
+        override fun onItemRangeRemoved(positionStart: Int, itemCount: Int) {
+            val count = observedAdapter?.itemCount ?: return
+            // A removal at the start or end results in a new first or last item
+            onEdgeItemsChanged(
+                firstChanged = positionStart == 0,
+                lastChanged = positionStart >= count,
+            )
+        }
+
+        override fun onItemRangeMoved(fromPosition: Int, toPosition: Int, itemCount: Int) {
+            val last = (observedAdapter?.itemCount ?: return) - 1
+            onEdgeItemsChanged(
+                firstChanged = fromPosition == 0 || toPosition == 0,
+                lastChanged = fromPosition + itemCount - 1 >= last ||
+                    toPosition + itemCount - 1 >= last,
+            )
+        }
+    }
+
+    /**
+     * Apply the given [WindowInsetsCompat.Type][insetType] as offsets of the first item.
+     *
+     * @param insetType Bit mask of [WindowInsetsCompat.Type]s to apply.
+     * The [windowInsetTypesOf] function is useful for creating the bit mask.
+     * @param sides Bit mask of [Side]s containing which sides to apply.
+     * Defaults to [Side.TOP]. The mask can be created via [sidesOf].
+     */
+    @JvmOverloads
+    fun firstItem(insetType: Int, @Sides sides: Int = Side.TOP): InsetterItemDecoration {
+        firstItemTypes.addTypes(insetType, sides)
+        return this
+    }
+
+    /**
+     * Apply the given [WindowInsetsCompat.Type][insetType] as offsets of the last item.
+     *
+     * @param insetType Bit mask of [WindowInsetsCompat.Type]s to apply.
+     * The [windowInsetTypesOf] function is useful for creating the bit mask.
+     * @param sides Bit mask of [Side]s containing which sides to apply.
+     * Defaults to [Side.BOTTOM]. The mask can be created via [sidesOf].
+     */
+    @JvmOverloads
+    fun lastItem(insetType: Int, @Sides sides: Int = Side.BOTTOM): InsetterItemDecoration {
+        lastItemTypes.addTypes(insetType, sides)
+        return this
+    }
+
+    /**
+     * Adds this decoration to the given [recyclerView], and starts listening to its window
+     * insets. This should be called after [firstItem] and [lastItem].
+     *
+     * The insets are observed without replacing the [recyclerView]'s window insets listener,
+     * so any [Insetter] which is applied to it, such as one which applies padding, continues
+     * to work.
+     * A decoration can only be attached to one [RecyclerView] at a time.
+     */
+    fun attachTo(recyclerView: RecyclerView) {
+        this.recyclerView = recyclerView
+        recyclerView.addItemDecoration(this)
+        recyclerView.adapter?.let(::observeAdapter)
+        WindowInsetsObservers.add(
+            recyclerView,
+            firstItemTypes.all() or lastItemTypes.all(),
+            insetsObserver
+        )
+    }
+
+    /**
+     * Removes this decoration from the given [recyclerView], which was previously
+     * attached via [attachTo].
+     */
+    fun detachFrom(recyclerView: RecyclerView) {
+        WindowInsetsObservers.remove(recyclerView, insetsObserver)
+        observedAdapter?.unregisterAdapterDataObserver(adapterObserver)
+        observedAdapter = null
+        recyclerView.removeItemDecoration(this)
+        this.recyclerView = null
+    }
+
+    private fun onApplyInsets(recyclerView: RecyclerView, insets: WindowInsetsCompat) {
+        // We deliberately use a non-short-circuiting 'or' so that both are updated
+        val changed = firstItemOffsets.updateFrom(insets, firstItemTypes) or
+            lastItemOffsets.updateFrom(insets, lastItemTypes)
+
+        if (changed) {
+            // Only trigger a re-layout of the items if the offsets have changed
+            recyclerView.invalidateItemDecorations()
+        }
+    }
+
+    /**
+     * The RecyclerView caches the offsets of each item until its decorations are invalidated,
+     * which does not happen for the previous first or last item when the adapter changes
+     * which items are at the edges.
+     */
+    private fun onEdgeItemsChanged(firstChanged: Boolean, lastChanged: Boolean) {
+        if ((firstChanged && firstItemOffsets.hasOffsets()) ||
+            (lastChanged && lastItemOffsets.hasOffsets())
+        ) {
+            recyclerView?.invalidateItemDecorations()
+        }
+    }
+
+    private fun observeAdapter(adapter: RecyclerView.Adapter<*>) {
+        if (adapter === observedAdapter) return
+        observedAdapter?.unregisterAdapterDataObserver(adapterObserver)
+        adapter.registerAdapterDataObserver(adapterObserver)
+        observedAdapter = adapter
+    }
+
+    override fun getItemOffsets(
+        outRect: Rect,
+        view: View,
+        parent: RecyclerView,
+        state: RecyclerView.State,
+    ) {
+        outRect.setEmpty()
+
+        val adapter = parent.adapter ?: return
+        // The adapter may have been set or swapped since we were attached
+        observeAdapter(adapter)
+
+        // We use the adapter position and item count, rather than the layout position and
+        // the state's item count. Those still reflect the previous data during a predictive
+        // pre-layout, and the offsets calculated then are kept for the following layout.
+        val position = parent.getChildAdapterPosition(view)
+        if (position == RecyclerView.NO_POSITION) return
+
+        if (position == 0) {
+            outRect.add(firstItemOffsets)
+        }
+        if (position == adapter.itemCount - 1) {
+            outRect.add(lastItemOffsets)
+        }
+    }
+}
+
+private fun IntArray.addTypes(insetType: Int, sides: Int) {
+    if (sides and Side.LEFT != 0) this[0] = this[0] or insetType
+    if (sides and Side.TOP != 0) this[1] = this[1] or insetType
+    if (sides and Side.RIGHT != 0) this[2] = this[2] or insetType
+    if (sides and Side.BOTTOM != 0) this[3] = this[3] or insetType
+}
+
+private fun IntArray.all(): Int = this[0] or this[1] or this[2] or this[3]
+
+/**
+ * Updates this rect from the given [insets], using the types for each side in [types].
+ * Returns true if any value has changed.
+ */
+private fun Rect.updateFrom(insets: WindowInsetsCompat, types: IntArray): Boolean {
+    val l = if (types[0] != 0) insets.getInsets(types[0]).left else 0
+    val t = if (types[1] != 0) insets.getInsets(types[1]).top else 0
+    val r = if (types[2] != 0) insets.getInsets(types[2]).right else 0
+    val b = if (types[3] != 0) insets.getInsets(types[3]).bottom else 0
+
+    if (left == l && top == t && right == r && bottom == b) return false
+    set(l, t, r, b)
+    return true
+}
+
+private fun Rect.hasOffsets(): Boolean = left != 0 || top != 0 || right != 0 || bottom != 0
+
+private fun Rect.add(other: Rect) {
+    left += other.left
+    top += other.top
+    right += other.right
+    bottom += other.bottom
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.chrisbanes.insetter
+
+import android.view.View
+import android.view.ViewGroup
+import androidx.core.graphics.Insets
+import androidx.core.view.ViewCompat
+import androidx.core.view.WindowInsetsCompat
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+
+/**
+ * Tests [InsetterItemDecoration]. The [RecyclerView] is not attached to a window, so that the
+ * insets which we dispatch are not clipped to the window's insets.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [28])
+class InsetterItemDecorationTest {
+    private val statusBars = WindowInsetsCompat.Type.statusBars()
+    private val navigationBars = WindowInsetsCompat.Type.navigationBars()
+
+    private lateinit var recyclerView: RecyclerView
+    private lateinit var adapter: TestAdapter
+
+    @Before
+    fun setup() {
+        val context = RuntimeEnvironment.getApplication()
+        adapter = TestAdapter(count = 3)
+        recyclerView = RecyclerView(context).apply {
+            layoutManager = LinearLayoutManager(context)
+            adapter = this@InsetterItemDecorationTest.adapter
+        }
+    }
+
+    @Test
+    fun offsetsAppliedToEdgeItems() {
+        decoration().attachTo(recyclerView)
+        recyclerView.dispatchSystemBars(top = 24, bottom = 48)
+        recyclerView.layoutNow()
+
+        assertOffsets(position = 0, top = 24, bottom = 0)
+        assertOffsets(position = 1, top = 0, bottom = 0)
+        assertOffsets(position = 2, top = 0, bottom = 48)
+    }
+
+    @Test
+    fun offsetsUpdatedWhenInsetsChange() {
+        decoration().attachTo(recyclerView)
+        recyclerView.dispatchSystemBars(top = 24, bottom = 48)
+        recyclerView.layoutNow()
+
+        recyclerView.dispatchSystemBars(top = 32, bottom = 0)
+        recyclerView.layoutNow()
+
+        assertOffsets(position = 0, top = 32, bottom = 0)
+        assertOffsets(position = 2, top = 0, bottom = 0)
+    }
+
+    @Test
+    fun insertAtEnd_movesLastItemOffset() {
+        decoration().attachTo(recyclerView)
+        recyclerView.dispatchSystemBars(top = 24, bottom = 48)
+        recyclerView.layoutNow()
+
+        adapter.count = 4
+        adapter.notifyItemInserted(3)
+        recyclerView.layoutNow()
+
+        assertOffsets(position = 2, top = 0, bottom = 0)
+        assertOffsets(position = 3, top = 0, bottom = 48)
+    }
+
+    @Test
+    fun removeAtEnd_movesLastItemOffset() {
+        decoration().attachTo(recyclerView)
+        recyclerView.dispatchSystemBars(top = 24, bottom = 48)
+        recyclerView.layoutNow()
+
+        adapter.count = 2
+        adapter.notifyItemRemoved(2)
+        recyclerView.layoutNow()
+
+        assertOffsets(position = 1, top = 0, bottom = 48)
+    }
+
+    @Test
+    fun removeAtStart_movesFirstItemOffset() {
+        decoration().attachTo(recyclerView)
+        recyclerView.dispatchSystemBars(top = 24, bottom = 48)
+        recyclerView.layoutNow()
+
+        adapter.count = 2
+        adapter.notifyItemRemoved(0)
+        recyclerView.layoutNow()
+
+        assertOffsets(position = 0, top = 24, bottom = 0)
+    }
+
+    @Test
+    fun attachTo_keepsInsetterAppliedBefore() {
+        Insetter.builder()
+            .paddingBottom(navigationBars)
+            .applyToView(recyclerView)
+        decoration().attachTo(recyclerView)
+
+        recyclerView.dispatchSystemBars(top = 24, bottom = 48)
+        recyclerView.layoutNow()
+
+        assertEquals(48, recyclerView.paddingBottom)
+        assertOffsets(position = 0, top = 24, bottom = 0)
+    }
+
+    @Test
+    fun attachTo_keepsInsetterAppliedAfter() {
+        decoration().attachTo(recyclerView)
+        Insetter.builder()
+            .paddingBottom(navigationBars)
+            .applyToView(recyclerView)
+
+        recyclerView.dispatchSystemBars(top = 24, bottom = 48)
+        recyclerView.layoutNow()
+
+        assertEquals(48, recyclerView.paddingBottom)
+        assertOffsets(position = 0, top = 24, bottom = 0)
+    }
+
+    @Test
+    fun detachFrom_removesOffsets() {
+        val decoration = decoration()
+        decoration.attachTo(recyclerView)
+        recyclerView.dispatchSystemBars(top = 24, bottom = 48)
+        recyclerView.layoutNow()
+
+        decoration.detachFrom(recyclerView)
+        recyclerView.layoutNow()
+
+        assertOffsets(position = 0, top = 0, bottom = 0)
+        assertOffsets(position = 2, top = 0, bottom = 0)
+    }
+
+    private fun decoration() = InsetterItemDecoration()
+        .firstItem(statusBars, Side.TOP)
+        .lastItem(navigationBars, Side.BOTTOM)
+
+    private fun assertOffsets(position: Int, top: Int, bottom: Int) {
+        val layoutManager = recyclerView.layoutManager!!
+        val view = recyclerView.findViewHolderForAdapterPosition(position)!!.itemView
+        assertEquals(
+            "top offset of item $position",
+            top,
+            layoutManager.getTopDecorationHeight(view)
+        )
+        assertEquals(
+            "bottom offset of item $position",
+            bottom,
+            layoutManager.getBottomDecorationHeight(view)
+        )
+    }
+
+    private class TestAdapter(var count: Int) : RecyclerView.Adapter<RecyclerView.ViewHolder>() {
+        override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): RecyclerView.ViewHolder {
+            val view = View(parent.context).apply {
+                layoutParams = RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 100)
+            }
+            return object : RecyclerView.ViewHolder(view) {}
+        }
+
+        override fun onBindViewHolder(holder: RecyclerView.ViewHolder, position: Int) = Unit
+
+        override fun getItemCount(): Int = count
+    }
+}
+
+private fun View.dispatchSystemBars(top: Int, bottom: Int) {
+    val insets = WindowInsetsCompat.Builder()
+        .setInsets(WindowInsetsCompat.Type.statusBars(), Insets.of(0, top, 0, 0))
+        .setInsets(WindowInsetsCompat.Type.navigationBars(), Insets.of(0, 0, 0, bottom))
+        .build()
+    ViewCompat.dispatchApplyWindowInsets(this, insets)
+}
+
+private fun View.layoutNow() {
+    measure(
+        View.MeasureSpec.makeMeasureSpec(1000, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(2000, View.MeasureSpec.EXACTLY),
+    )
+    layout(0, 0, 1000, 2000)
+}
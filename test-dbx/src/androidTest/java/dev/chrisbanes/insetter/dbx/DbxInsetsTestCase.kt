@@ -18,14 +18,20 @@ package dev.chrisbanes.insetter.dbx
 
 import android.app.Activity
 import android.graphics.Rect
+import android.view.View
+import androidx.core.graphics.Insets
 import androidx.core.view.WindowInsetsCompat
 import androidx.databinding.DataBindingUtil
 import androidx.test.ext.junit.rules.ActivityScenarioRule
+import dev.chrisbanes.insetter.InsetsRequestScheduler
+import dev.chrisbanes.insetter.Insetter
+import dev.chrisbanes.insetter.applyInsetsFromBooleans
 import dev.chrisbanes.insetter.test.dbx.databinding.InsetterDbxBinding
 import dev.chrisbanes.insetter.test.dbx.test.R
 import dev.chrisbanes.insetter.testutils.assertLayoutMargin
 import dev.chrisbanes.insetter.testutils.assertPadding
 import dev.chrisbanes.insetter.testutils.dispatchInsets
+import org.junit.Assert.assertEquals
 import org.junit.Before
 import org.junit.Rule
 import org.junit.Test
@@ -85,6 +91,88 @@ class DbxInsetsTestCase {
         assertChildViewState(insets2)
     }
 
+    @Test
+    fun rebindSameValues_isNoOp() {
+        rule.scenario.onActivity {
+            binding.executePendingBindings()
+            val view = binding.systemWindowPadding.top
+            val scheduler = InsetsRequestScheduler.of(view)
+            // Make sure that a request is scheduled, so that any further request is merged
+            scheduler.requestApplyInsets()
+            val mergedRequests = scheduler.mergedRequestCount
+
+            // Re-bind the same value which the layout binds to the view
+            view.bindSystemWindowPadding(top = true)
+
+            // Applying an Insetter to an attached view would request an insets pass
+            assertEquals(mergedRequests, scheduler.mergedRequestCount)
+        }
+    }
+
+    @Test
+    fun rebindChangedValues_replacesInsetter() {
+        rule.scenario.onActivity {
+            binding.executePendingBindings()
+            val view = binding.systemWindowPadding.bottom
+            view.bindSystemWindowPadding(top = true)
+
+            view.dispatchStatusBars(top = 20)
+            assertEquals(20, view.paddingTop)
+        }
+    }
+
+    @Test
+    fun rebindSameValues_afterInsetterReplaced_reappliesSpec() {
+        rule.scenario.onActivity {
+            binding.executePendingBindings()
+            val view = binding.systemWindowPadding.top
+            // Replace the Insetter outside of data binding
+            Insetter.builder()
+                .setOnApplyInsetsListener { _, _, _ -> }
+                .applyToView(view)
+
+            view.bindSystemWindowPadding(top = true)
+
+            view.dispatchStatusBars(top = 20)
+            assertEquals(20, view.paddingTop)
+        }
+    }
+
+    private fun View.bindSystemWindowPadding(top: Boolean = false, bottom: Boolean = false) {
+        applyInsetsFromBooleans(
+            v = this,
+            consumeWindowInsets = false,
+            padSystemWindowLeft = false,
+            padSystemWindowTop = top,
+            padSystemWindowRight = false,
+            padSystemWindowBottom = bottom,
+            padSystemGestureLeft = false,
+            padSystemGestureTop = false,
+            padSystemGestureRight = false,
+            padSystemGestureBottom = false,
+            marginSystemWindowLeft = false,
+            marginSystemWindowTop = false,
+            marginSystemWindowRight = false,
+            marginSystemWindowBottom = false,
+            marginSystemGestureLeft = false,
+            marginSystemGestureTop = false,
+            marginSystemGestureRight = false,
+            marginSystemGestureBottom = false,
+        )
+    }
+
+    /**
+     * Dispatches status bar insets. We don't use the navigation bars, since below API 30 their
+     * insets are clipped to the window's real insets.
+     */
+    private fun View.dispatchStatusBars(top: Int) {
+        dispatchInsets {
+            WindowInsetsCompat.Builder()
+                .setInsets(WindowInsetsCompat.Type.statusBars(), Insets.of(0, top, 0, 0))
+                .build()
+        }
+    }
+
     private fun assertChildViewState(insets: WindowInsetsCompat) {
         @Suppress("DEPRECATION")
         val systemWindowInsets = insets.systemWindowInsets